@@ -0,0 +1,134 @@
+package com.example.cameraapp.ui.gallery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.os.Debug;
+import android.util.Log;
+import android.widget.FrameLayout;
+
+import androidx.appcompat.view.ContextThemeWrapper;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.cameraapp.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Counts allocations made while binding grid cells. Both the calling thread's
+ * and the process-wide counters are read: the thread counter pins the work to
+ * the bind itself, the global one catches anything it hands off.
+ */
+@RunWith(AndroidJUnit4.class)
+@SuppressWarnings("deprecation")
+public class GalleryAdapterAllocationTest {
+
+    private static final String TAG = "GalleryAllocTest";
+
+    private static final int VISIBLE_ROWS = 30;
+    private static final int TABLE_ROWS = 600;
+    private static final int WARM_UP_PASSES = 5;
+    private static final int MEASURED_PASSES = 20;
+
+    /**
+     * Budget for binding a row the holder has not shown yet: one MediaThumbnail
+     * model plus the Glide request, target and options it needs. The adapter's
+     * own work is covered by {@link #rebindAllocatesNothingAfterWarmUp()}.
+     */
+    private static final int MAX_ALLOCATIONS_PER_NEW_ROW = 48;
+
+    private GalleryAdapter adapter;
+    private GalleryAdapter.GalleryViewHolder[] holders;
+
+    @Before
+    public void setUp() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            Context context = new ContextThemeWrapper(
+                    InstrumentationRegistry.getInstrumentation().getTargetContext(), R.style.Theme_CameraApp);
+            adapter = new GalleryAdapter((item, position) -> { });
+            adapter.setThumbnailSize(256);
+            adapter.setItems(createTable());
+
+            FrameLayout parent = new FrameLayout(context);
+            holders = new GalleryAdapter.GalleryViewHolder[VISIBLE_ROWS];
+            for (int i = 0; i < VISIBLE_ROWS; i++) {
+                holders[i] = adapter.onCreateViewHolder(parent, 0);
+            }
+        });
+    }
+
+    @Test
+    public void rebindAllocatesNothingAfterWarmUp() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            for (int pass = 0; pass < WARM_UP_PASSES; pass++) {
+                bindVisible(0);
+            }
+
+            startCounting();
+            for (int pass = 0; pass < MEASURED_PASSES; pass++) {
+                bindVisible(0);
+            }
+            Debug.stopAllocCounting();
+
+            assertEquals("thread allocations during rebind", 0, Debug.getThreadAllocCount());
+            assertEquals("global allocations during rebind", 0, Debug.getGlobalAllocCount());
+        });
+    }
+
+    @Test
+    public void scrollingAllocatesOnlyForNewRows() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            for (int pass = 0; pass < WARM_UP_PASSES; pass++) {
+                bindVisible(0);
+            }
+
+            // Scroll one grid row at a time, binding the rows that come into
+            // view to the holders of the rows that left, as RecyclerView does.
+            int binds = 0;
+            startCounting();
+            for (int first = GalleryFragment.GRID_SPAN_COUNT;
+                 first + VISIBLE_ROWS <= TABLE_ROWS;
+                 first += GalleryFragment.GRID_SPAN_COUNT) {
+                for (int i = 0; i < GalleryFragment.GRID_SPAN_COUNT; i++) {
+                    int position = first + VISIBLE_ROWS - GalleryFragment.GRID_SPAN_COUNT + i;
+                    adapter.onBindViewHolder(holders[position % VISIBLE_ROWS], position);
+                    binds++;
+                }
+            }
+            Debug.stopAllocCounting();
+
+            int threadAllocations = Debug.getThreadAllocCount();
+            Log.d(TAG, "Scroll: binds=" + binds + ", thread=" + threadAllocations
+                    + ", global=" + Debug.getGlobalAllocCount());
+            assertTrue("thread allocations per new row: " + threadAllocations / binds,
+                    threadAllocations <= binds * MAX_ALLOCATIONS_PER_NEW_ROW);
+        });
+    }
+
+    private void bindVisible(int first) {
+        for (int i = 0; i < holders.length; i++) {
+            adapter.onBindViewHolder(holders[i], first + i);
+        }
+    }
+
+    private static void startCounting() {
+        Debug.resetThreadAllocCount();
+        Debug.resetGlobalAllocCount();
+        Debug.startAllocCounting();
+    }
+
+    private static MediaTable createTable() {
+        MediaTable table = new MediaTable(TABLE_ROWS);
+        long now = System.currentTimeMillis() / 1000;
+        for (int i = 0; i < TABLE_ROWS; i++) {
+            boolean video = i % 3 == 0;
+            table.add(1000 + i, "IMG_" + i + ".jpg", now - i * 3600L, now - i * 3600L,
+                    1024L * i, video ? 5_000L + i * 1000L : 0, video);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.cameraapp.ui.gallery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import android.Manifest;
+import android.app.Instrumentation;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.Lifecycle;
+import androidx.navigation.fragment.NavHostFragment;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.cameraapp.MainActivity;
+import com.example.cameraapp.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Opening the gallery must cost exactly one MediaStore scan, and coming back
+ * to it without any media change must not add another.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GalleryQueryCountTest {
+
+    private static final long SETTLE_MS = 2000;
+
+    @Before
+    public void grantPermissions() throws IOException {
+        grant(Manifest.permission.CAMERA);
+        grant(Manifest.permission.RECORD_AUDIO);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            grant(Manifest.permission.READ_MEDIA_IMAGES);
+            grant(Manifest.permission.READ_MEDIA_VIDEO);
+        } else {
+            grant(Manifest.permission.READ_EXTERNAL_STORAGE);
+        }
+    }
+
+    @Test
+    public void openingGalleryScansMediaStoreOnce() {
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            scenario.onActivity(activity -> activity.getNavController().navigate(R.id.galleryFragment));
+            settle();
+            assertEquals(1, queryCount(scenario));
+
+            scenario.moveToState(Lifecycle.State.STARTED);
+            scenario.moveToState(Lifecycle.State.RESUMED);
+            settle();
+            assertEquals(1, queryCount(scenario));
+        }
+    }
+
+    private static int queryCount(ActivityScenario<MainActivity> scenario) {
+        AtomicReference<Integer> count = new AtomicReference<>();
+        scenario.onActivity(activity -> {
+            NavHostFragment host = (NavHostFragment) activity.getSupportFragmentManager()
+                    .findFragmentById(R.id.nav_host_fragment);
+            Fragment current = host.getChildFragmentManager().getPrimaryNavigationFragment();
+            if (current instanceof GalleryFragment) {
+                count.set(((GalleryFragment) current).getQueryCount());
+            }
+        });
+        assertNotNull("gallery is not the current destination", count.get());
+        return count.get();
+    }
+
+    /** Lets the first page and any debounced refresh run to completion. */
+    private static void settle() {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        instrumentation.waitForIdleSync();
+        SystemClock.sleep(SETTLE_MS);
+        instrumentation.waitForIdleSync();
+    }
+
+    private static void grant(String permission) throws IOException {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        String packageName = instrumentation.getTargetContext().getPackageName();
+        ParcelFileDescriptor output = instrumentation.getUiAutomation()
+                .executeShellCommand("pm grant " + packageName + " " + permission);
+        // Reading to the end waits for the command to finish.
+        try (InputStream in = new ParcelFileDescriptor.AutoCloseInputStream(output)) {
+            byte[] buffer = new byte[256];
+            while (in.read(buffer) != -1) {
+                // Discard pm's output.
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.cameraapp;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.module.AppGlideModule;
+import com.example.cameraapp.ui.gallery.MediaThumbnail;
+import com.example.cameraapp.ui.gallery.MediaThumbnailLoader;
+
+import java.io.InputStream;
+
+@GlideModule
+public final class CameraAppGlideModule extends AppGlideModule {
+
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide,
+                                   @NonNull Registry registry) {
+        registry.prepend(MediaThumbnail.class, InputStream.class,
+                new MediaThumbnailLoader.Factory(context));
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.cameraapp;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.camera.core.Camera;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.UseCase;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.Arrays;
+
+/**
+ * Keeps one screen's camera use cases bound across resume and lens switches.
+ * The use cases are built once and handed in with {@link #setUseCases}; the
+ * session is only rebound when the lens or the use-case set actually changes,
+ * because the lifecycle owner already stops and restarts a bound camera on its
+ * own. Resume and switch are timed to the first streaming preview frame.
+ */
+public final class CameraSessionController {
+
+    private static final String TAG = "CameraSession";
+
+    private final LifecycleOwner owner;
+    private final CaptureMetrics metrics = CaptureMetrics.getInstance();
+
+    private ProcessCameraProvider cameraProvider;
+    private UseCase[] useCases = new UseCase[0];
+    private boolean useCasesChanged = false;
+    private Camera camera;
+    private int boundLensFacing = -1;
+
+    private int resumeCookie = 0;
+    private int switchCookie = 0;
+    private boolean streaming = false;
+
+    private int binds = 0;
+    private int skippedBinds = 0;
+
+    public CameraSessionController(LifecycleOwner owner) {
+        this.owner = owner;
+    }
+
+    public static CameraSelector selectorFor(int lensFacing) {
+        return new CameraSelector.Builder().requireLensFacing(lensFacing).build();
+    }
+
+    public void setCameraProvider(ProcessCameraProvider cameraProvider) {
+        this.cameraProvider = cameraProvider;
+    }
+
+    @Nullable
+    public ProcessCameraProvider getCameraProvider() {
+        return cameraProvider;
+    }
+
+    public void setUseCases(UseCase... useCases) {
+        if (Arrays.equals(this.useCases, useCases)) return;
+        this.useCases = useCases.clone();
+        useCasesChanged = true;
+    }
+
+    /** Times the first preview frame after the screen comes back. */
+    public void observePreview(PreviewView previewView) {
+        previewView.getPreviewStreamState().observe(owner, state -> {
+            streaming = state == PreviewView.StreamState.STREAMING;
+            if (streaming) {
+                endPreviewPhases();
+            }
+        });
+    }
+
+    public void markResume() {
+        metrics.abandon(CaptureMetrics.Phase.RESUME_TO_PREVIEW, resumeCookie);
+        resumeCookie = metrics.newCookie();
+        metrics.begin(CaptureMetrics.Phase.RESUME_TO_PREVIEW, resumeCookie);
+        if (streaming) {
+            endPreviewPhases();
+        }
+    }
+
+    public void markSwitch() {
+        metrics.abandon(CaptureMetrics.Phase.SWITCH_TO_PREVIEW, switchCookie);
+        switchCookie = metrics.newCookie();
+        metrics.begin(CaptureMetrics.Phase.SWITCH_TO_PREVIEW, switchCookie);
+        streaming = false;
+    }
+
+    /**
+     * Binds the use cases to {@code lensFacing} unless they already are.
+     *
+     * @return true if a new binding was made, false if the existing one was kept
+     */
+    public boolean bind(int lensFacing) {
+        if (cameraProvider == null) return false;
+        if (camera != null && lensFacing == boundLensFacing && !useCasesChanged && isBound()) {
+            skippedBinds++;
+            return false;
+        }
+
+        cameraProvider.unbindAll();
+        camera = null;
+        boundLensFacing = -1;
+        camera = cameraProvider.bindToLifecycle(owner, selectorFor(lensFacing), useCases);
+        boundLensFacing = lensFacing;
+        useCasesChanged = false;
+        binds++;
+        return true;
+    }
+
+    @Nullable
+    public Camera getCamera() {
+        return camera;
+    }
+
+    public void unbind() {
+        if (cameraProvider != null) {
+            cameraProvider.unbindAll();
+        }
+        camera = null;
+        boundLensFacing = -1;
+    }
+
+    public String getStats() {
+        return "binds=" + binds + ", skippedBinds=" + skippedBinds;
+    }
+
+    public void logStats(String screen) {
+        Log.d(TAG, screen + ": " + getStats());
+    }
+
+    private boolean isBound() {
+        for (UseCase useCase : useCases) {
+            if (!cameraProvider.isBound(useCase)) return false;
+        }
+        return true;
+    }
+
+    private void endPreviewPhases() {
+        metrics.end(CaptureMetrics.Phase.RESUME_TO_PREVIEW, resumeCookie);
+        metrics.end(CaptureMetrics.Phase.SWITCH_TO_PREVIEW, switchCookie);
+    }
+}
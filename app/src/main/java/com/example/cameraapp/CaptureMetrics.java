@@ -0,0 +1,116 @@
+package com.example.cameraapp;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-session latency histograms for the capture pipelines. Each phase is
+ * opened with {@link #begin} and closed with {@link #end} under a cookie that
+ * identifies the shot or recording; on Android 10+ the same pair also emits an
+ * async trace section, so the phases line up with camera and codec threads in
+ * Perfetto. A session runs until {@link #dumpAndReset} logs it.
+ */
+public final class CaptureMetrics {
+
+    private static final String TAG = "CaptureMetrics";
+
+    public enum Phase {
+        TAP_TO_CAPTURE("capture.tapToCapture"),
+        CAPTURE_TO_SAVED("capture.captureToSaved"),
+        SAVED_TO_THUMBNAIL("capture.savedToThumbnail"),
+        TAP_TO_THUMBNAIL("capture.tapToThumbnail"),
+        RECORD_TO_START("record.startToStartEvent"),
+        RECORD_TO_FIRST_STATUS("record.startToFirstStatus"),
+        STOP_TO_FINALIZE("record.stopToFinalize"),
+        RESUME_TO_PREVIEW("session.resumeToPreview"),
+        SWITCH_TO_PREVIEW("session.switchToPreview");
+
+        final String traceName;
+
+        Phase(String traceName) {
+            this.traceName = traceName;
+        }
+    }
+
+    private static CaptureMetrics instance;
+
+    private final AtomicInteger nextCookie = new AtomicInteger();
+    private final Map<Phase, LatencyHistogram> histograms = new EnumMap<>(Phase.class);
+    private final Map<Phase, Map<Integer, Long>> openPhases = new EnumMap<>(Phase.class);
+
+    public static synchronized CaptureMetrics getInstance() {
+        if (instance == null) {
+            instance = new CaptureMetrics();
+        }
+        return instance;
+    }
+
+    private CaptureMetrics() {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+            openPhases.put(phase, new HashMap<>());
+        }
+    }
+
+    /** A fresh cookie for one shot or recording. */
+    public int newCookie() {
+        return nextCookie.incrementAndGet();
+    }
+
+    public synchronized void begin(Phase phase, int cookie) {
+        openPhases.get(phase).put(cookie, SystemClock.elapsedRealtime());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(phase.traceName, cookie);
+        }
+    }
+
+    /** Closes {@code phase} for {@code cookie}; does nothing if it was never opened. */
+    public synchronized void end(Phase phase, int cookie) {
+        Long startedAt = openPhases.get(phase).remove(cookie);
+        if (startedAt == null) return;
+        histograms.get(phase).record(SystemClock.elapsedRealtime() - startedAt);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(phase.traceName, cookie);
+        }
+    }
+
+    /** Drops an open phase whose end will never come, e.g. a failed capture. */
+    public synchronized void abandon(Phase phase, int cookie) {
+        if (openPhases.get(phase).remove(cookie) != null
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(phase.traceName, cookie);
+        }
+    }
+
+    public synchronized String getStats() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Phase, LatencyHistogram> entry : histograms.entrySet()) {
+            if (entry.getValue().getCount() == 0) continue;
+            sb.append('\n').append(entry.getKey()).append(": ").append(entry.getValue().summary());
+        }
+        return sb.length() == 0 ? "no samples" : sb.toString();
+    }
+
+    /** Logs p50/p95/p99 for every phase seen this session, then starts a new one. */
+    public synchronized void dumpAndReset(String reason) {
+        Log.d(TAG, "Capture latency (" + reason + ", ms): " + getStats());
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        for (Map.Entry<Phase, Map<Integer, Long>> entry : openPhases.entrySet()) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                for (int cookie : entry.getValue().keySet()) {
+                    Trace.endAsyncSection(entry.getKey().traceName, cookie);
+                }
+            }
+            entry.getValue().clear();
+        }
+    }
+}
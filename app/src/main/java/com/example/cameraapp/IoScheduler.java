@@ -0,0 +1,211 @@
+package com.example.cameraapp;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide background executor split into priority lanes. Each lane has
+ * its own bounded queue and threads, so a burst of thumbnail or index work can
+ * never delay the query that the visible screen is waiting for.
+ */
+public final class IoScheduler {
+
+    private static final String TAG = "IoScheduler";
+
+    public enum Lane {
+        QUERY(1, 16, Process.THREAD_PRIORITY_DEFAULT, false),
+        DECODE(1, 8, Process.THREAD_PRIORITY_DEFAULT, false),
+        TILE(2, 32, Process.THREAD_PRIORITY_DEFAULT, false),
+        DIFF(1, 4, Process.THREAD_PRIORITY_DEFAULT, true),
+        CAPTURE(2, 8, Process.THREAD_PRIORITY_DEFAULT, false),
+        THUMBNAIL(2, 64, Process.THREAD_PRIORITY_BACKGROUND, true),
+        INDEX(1, 32, Process.THREAD_PRIORITY_LOWEST, false),
+        POSTER(1, 16, Process.THREAD_PRIORITY_LOWEST, true),
+        DELETE(1, 32, Process.THREAD_PRIORITY_BACKGROUND, false);
+
+        final int threads;
+        final int queueCapacity;
+        final int threadPriority;
+        final boolean dropOldest;
+
+        Lane(int threads, int queueCapacity, int threadPriority, boolean dropOldest) {
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+            this.threadPriority = threadPriority;
+            this.dropOldest = dropOldest;
+        }
+    }
+
+    /**
+     * Cancelled when the owning lifecycle is destroyed. Queued tasks carrying a
+     * cancelled token are skipped; running tasks can poll {@link #isCancelled()}.
+     */
+    public static final class Token {
+
+        private volatile boolean cancelled = false;
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static final class LaneMetrics {
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong cancelled = new AtomicLong();
+        final AtomicLong totalWaitMs = new AtomicLong();
+        final AtomicLong totalRunMs = new AtomicLong();
+        final AtomicLong maxWaitMs = new AtomicLong();
+    }
+
+    private static IoScheduler instance;
+
+    private final Map<Lane, ThreadPoolExecutor> executors = new EnumMap<>(Lane.class);
+    private final Map<Lane, LaneMetrics> metrics = new EnumMap<>(Lane.class);
+
+    private IoScheduler() {
+        for (Lane lane : Lane.values()) {
+            metrics.put(lane, new LaneMetrics());
+            executors.put(lane, createExecutor(lane));
+        }
+    }
+
+    public static synchronized IoScheduler getInstance() {
+        if (instance == null) {
+            instance = new IoScheduler();
+        }
+        return instance;
+    }
+
+    public static Token bindTo(LifecycleOwner owner) {
+        Token token = new Token();
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            token.cancel();
+            return token;
+        }
+        owner.getLifecycle().addObserver(new DefaultLifecycleObserver() {
+            @Override
+            public void onDestroy(@NonNull LifecycleOwner source) {
+                token.cancel();
+                source.getLifecycle().removeObserver(this);
+            }
+        });
+        return token;
+    }
+
+    /**
+     * Queues {@code task} on {@code lane}. Returns false if the lane is full;
+     * lanes marked drop-oldest make room by discarding their oldest task instead.
+     */
+    public boolean execute(Lane lane, @Nullable Token token, Runnable task) {
+        LaneMetrics laneMetrics = metrics.get(lane);
+        ThreadPoolExecutor executor = executors.get(lane);
+        long queuedAt = SystemClock.elapsedRealtime();
+
+        Runnable wrapped = () -> {
+            long startedAt = SystemClock.elapsedRealtime();
+            long waitMs = startedAt - queuedAt;
+            laneMetrics.totalWaitMs.addAndGet(waitMs);
+            laneMetrics.maxWaitMs.accumulateAndGet(waitMs, Math::max);
+
+            if (token != null && token.isCancelled()) {
+                laneMetrics.cancelled.incrementAndGet();
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Task failed on lane " + lane, e);
+            } finally {
+                laneMetrics.totalRunMs.addAndGet(SystemClock.elapsedRealtime() - startedAt);
+                laneMetrics.completed.incrementAndGet();
+            }
+        };
+
+        try {
+            executor.execute(wrapped);
+            laneMetrics.submitted.incrementAndGet();
+            return true;
+        } catch (RejectedExecutionException e) {
+            laneMetrics.rejected.incrementAndGet();
+            Log.w(TAG, "Lane " + lane + " is full, task rejected");
+            return false;
+        }
+    }
+
+    public int getQueueDepth(Lane lane) {
+        return executors.get(lane).getQueue().size();
+    }
+
+    public String getStats(Lane lane) {
+        LaneMetrics m = metrics.get(lane);
+        long completed = Math.max(1, m.completed.get());
+        return lane + ": queued=" + getQueueDepth(lane) +
+               ", active=" + executors.get(lane).getActiveCount() +
+               ", submitted=" + m.submitted.get() +
+               ", completed=" + m.completed.get() +
+               ", rejected=" + m.rejected.get() +
+               ", dropped=" + m.dropped.get() +
+               ", cancelled=" + m.cancelled.get() +
+               ", avgWaitMs=" + m.totalWaitMs.get() / completed +
+               ", maxWaitMs=" + m.maxWaitMs.get() +
+               ", avgRunMs=" + m.totalRunMs.get() / completed;
+    }
+
+    public void logStats() {
+        for (Lane lane : Lane.values()) {
+            Log.d(TAG, getStats(lane));
+        }
+    }
+
+    private void dropOldest(Lane lane, Runnable runnable, ThreadPoolExecutor pool) {
+        if (pool.isShutdown()) return;
+        if (pool.getQueue().poll() != null) {
+            metrics.get(lane).dropped.incrementAndGet();
+        }
+        pool.execute(runnable);
+    }
+
+    private ThreadPoolExecutor createExecutor(Lane lane) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                lane.threads, lane.threads,
+                30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(lane.queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(() -> {
+                        Process.setThreadPriority(lane.threadPriority);
+                        runnable.run();
+                    }, "io-" + lane.name().toLowerCase() + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                lane.dropOldest
+                        ? (runnable, pool) -> dropOldest(lane, runnable, pool)
+                        : new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.cameraapp;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-bucket latency histogram: 5 ms buckets up to five seconds plus one
+ * overflow bucket, so recording is constant-time and allocation-free and a
+ * percentile is read off the cumulative counts. Not thread-safe.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKET_MS = 5;
+    private static final int BUCKETS = 1000;
+
+    private final int[] counts = new int[BUCKETS + 1];
+    private int total = 0;
+    private long sumMs = 0;
+    private long maxMs = 0;
+
+    public void record(long elapsedMs) {
+        long clamped = Math.max(0, elapsedMs);
+        int bucket = (int) Math.min(BUCKETS, clamped / BUCKET_MS);
+        counts[bucket]++;
+        total++;
+        sumMs += clamped;
+        maxMs = Math.max(maxMs, clamped);
+    }
+
+    public int getCount() {
+        return total;
+    }
+
+    /** Upper bound of the bucket holding the {@code percentile}-th sample, capped at the max seen. */
+    public long getPercentile(double percentile) {
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i <= BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i == BUCKETS ? maxMs : Math.min(maxMs, (long) (i + 1) * BUCKET_MS);
+            }
+        }
+        return maxMs;
+    }
+
+    public String summary() {
+        if (total == 0) return "n=0";
+        return "n=" + total + ", avg=" + (sumMs / total) + ", p50=" + getPercentile(50) +
+               ", p95=" + getPercentile(95) + ", p99=" + getPercentile(99) + ", max=" + maxMs;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        sumMs = 0;
+        maxMs = 0;
+    }
+}
@@ -106,6 +106,24 @@ public class MainActivity extends AppCompatActivity {
         return navController;
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        MediaMemoryCache.getInstance(this).restoreBudgets();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        MediaMemoryCache.getInstance(this).trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        MediaMemoryCache.getInstance(this).clear();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
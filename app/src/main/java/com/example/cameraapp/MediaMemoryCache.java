@@ -0,0 +1,175 @@
+package com.example.cameraapp;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import com.example.cameraapp.ui.gallery.MediaItem;
+
+/**
+ * Process-wide, byte-bounded LRU for decoded preview bitmaps and per-item
+ * metadata. Budgets scale with {@link ActivityManager#getMemoryClass()} and
+ * are capped step by step while the system reports memory pressure, until
+ * {@link #restoreBudgets()} is called once the app is visible again.
+ */
+public final class MediaMemoryCache {
+
+    private static final String TAG = "MediaMemoryCache";
+    private static final int PREVIEW_BUDGET_DIVISOR = 8;
+    private static final int METADATA_BUDGET_DIVISOR = 64;
+    private static final int METADATA_ENTRY_BYTES = 96;
+
+    private static MediaMemoryCache instance;
+
+    private final LruCache<String, Bitmap> previews;
+    private final LruCache<Long, MediaItem> metadata;
+    private final int previewBudget;
+    private final int metadataBudget;
+    private int trimCount = 0;
+
+    private MediaMemoryCache(Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long memoryClassBytes = activityManager.getMemoryClass() * 1024L * 1024L;
+        previewBudget = (int) (memoryClassBytes / PREVIEW_BUDGET_DIVISOR);
+        metadataBudget = (int) (memoryClassBytes / METADATA_BUDGET_DIVISOR);
+
+        previews = new LruCache<String, Bitmap>(previewBudget) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+        metadata = new LruCache<Long, MediaItem>(metadataBudget) {
+            @Override
+            protected int sizeOf(Long key, MediaItem value) {
+                String name = value.getDisplayName();
+                return METADATA_ENTRY_BYTES + (name != null ? name.length() * 2 : 0);
+            }
+        };
+        Log.d(TAG, "Budgets: previews=" + previews.maxSize() + " B, metadata=" + metadata.maxSize() + " B");
+    }
+
+    public static synchronized MediaMemoryCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaMemoryCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public int getPreviewBudgetBytes() {
+        return previews.maxSize();
+    }
+
+    @Nullable
+    public Bitmap getPreview(String key) {
+        return previews.get(key);
+    }
+
+    public void putPreview(String key, Bitmap bitmap) {
+        previews.put(key, bitmap);
+    }
+
+    @Nullable
+    public MediaItem getMetadata(long id) {
+        return metadata.get(id);
+    }
+
+    public void putMetadata(MediaItem item) {
+        metadata.put(item.getId(), item);
+    }
+
+    public void invalidate(long id) {
+        metadata.remove(id);
+    }
+
+    /**
+     * How far each trim level caps the budgets, in quarters of the full
+     * budget. Levels rank as the platform orders them, so BACKGROUND (40)
+     * trims like UI_HIDDEN (20) rather than like the running levels.
+     */
+    enum TrimStep {
+        /** RUNNING_MODERATE. */
+        LIGHT(3, 4, false),
+        /** RUNNING_LOW, UI_HIDDEN and BACKGROUND. */
+        HIDDEN(2, 4, false),
+        /** MODERATE. */
+        MODERATE(1, 2, false),
+        /** RUNNING_CRITICAL and COMPLETE: both caches are emptied under the MODERATE cap. */
+        CRITICAL(1, 2, true);
+
+        final int previewQuarters;
+        final int metadataQuarters;
+        final boolean evictAll;
+
+        TrimStep(int previewQuarters, int metadataQuarters, boolean evictAll) {
+            this.previewQuarters = previewQuarters;
+            this.metadataQuarters = metadataQuarters;
+            this.evictAll = evictAll;
+        }
+
+        static TrimStep forLevel(int level) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE
+                    || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                return CRITICAL;
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+                return MODERATE;
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                    || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                return HIDDEN;
+            }
+            return LIGHT;
+        }
+    }
+
+    /**
+     * Caps the budgets for {@code level} as {@link TrimStep} lists: 3/4 of the
+     * previews for RUNNING_MODERATE, 1/2 for RUNNING_LOW, UI_HIDDEN and
+     * BACKGROUND, and 1/4 of the previews plus 1/2 of the metadata for
+     * MODERATE; RUNNING_CRITICAL and COMPLETE also empty both caches. The cap
+     * stays in place, so the caches cannot grow back while under pressure; a
+     * later, lighter level loosens it.
+     */
+    public synchronized void trimMemory(int level) {
+        trimCount++;
+        TrimStep step = TrimStep.forLevel(level);
+        if (step.evictAll) {
+            previews.evictAll();
+            metadata.evictAll();
+        }
+        cap(previewBudget / 4 * step.previewQuarters, metadataBudget / 4 * step.metadataQuarters);
+        Log.d(TAG, "Trimmed for level " + level + " (" + step + "): " + getStats());
+    }
+
+    /** Lifts the caps set by {@link #trimMemory(int)} once the pressure has cleared. */
+    public synchronized void restoreBudgets() {
+        if (previews.maxSize() == previewBudget && metadata.maxSize() == metadataBudget) return;
+        cap(previewBudget, metadataBudget);
+        Log.d(TAG, "Budgets restored: " + getStats());
+    }
+
+    private void cap(int previewBytes, int metadataBytes) {
+        previews.resize(Math.max(previewBytes, 1));
+        metadata.resize(Math.max(metadataBytes, 1));
+    }
+
+    public void clear() {
+        previews.evictAll();
+        metadata.evictAll();
+    }
+
+    public String getStats() {
+        return "previews=" + previews.size() + "/" + previews.maxSize() + " B" +
+               " (hits=" + previews.hitCount() + ", misses=" + previews.missCount() +
+               ", evictions=" + previews.evictionCount() + ")" +
+               ", metadata=" + metadata.size() + "/" + metadata.maxSize() + " B" +
+               " (hits=" + metadata.hitCount() + ", misses=" + metadata.missCount() +
+               ", evictions=" + metadata.evictionCount() + ")" +
+               ", trims=" + trimCount;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.cameraapp.ui.gallery;
+
+import android.util.LongSparseArray;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Formats DATE_ADDED seconds as a day label, formatting each local calendar
+ * day once and reusing the String for every other item from the same day.
+ */
+class DayLabelCache {
+
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy", new Locale("ru"));
+    private final LongSparseArray<String> labels = new LongSparseArray<>();
+    private final TimeZone timeZone = TimeZone.getDefault();
+
+    String format(long dateAddedSeconds) {
+        long offsetSeconds = timeZone.getOffset(dateAddedSeconds * 1000) / 1000;
+        long epochDay = Math.floorDiv(dateAddedSeconds + offsetSeconds, SECONDS_PER_DAY);
+
+        String label = labels.get(epochDay);
+        if (label == null) {
+            label = dateFormat.format(new Date(dateAddedSeconds * 1000));
+            labels.put(epochDay, label);
+        }
+        return label;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.cameraapp.ui.gallery;
+
+import android.widget.TextView;
+
+/**
+ * Writes "m:ss" / "h:mm:ss" into a reused char buffer, producing the same
+ * text as {@link MediaItem#formatDuration(long)} without building a String.
+ * TextView keeps a reference to the buffer, so use one instance per view.
+ */
+class DurationFormatter {
+
+    private final char[] buffer = new char[24];
+    private TextView lastView;
+    private long lastDurationMs = Long.MIN_VALUE;
+
+    void setText(TextView view, long durationMs) {
+        // Re-setting identical text still relayouts the TextView, which allocates.
+        if (view == lastView && durationMs == lastDurationMs) return;
+        lastView = view;
+        lastDurationMs = durationMs;
+
+        if (durationMs <= 0) {
+            view.setText(buffer, 0, 0);
+            return;
+        }
+
+        long seconds = (durationMs / 1000) % 60;
+        long minutes = (durationMs / (1000 * 60)) % 60;
+        long hours = durationMs / (1000 * 60 * 60);
+
+        int length = 0;
+        if (hours > 0) {
+            length = appendNumber(hours, length);
+            buffer[length++] = ':';
+            length = appendTwoDigits(minutes, length);
+        } else {
+            length = appendNumber(minutes, length);
+        }
+        buffer[length++] = ':';
+        length = appendTwoDigits(seconds, length);
+
+        view.setText(buffer, 0, length);
+    }
+
+    private int appendTwoDigits(long value, int offset) {
+        buffer[offset] = (char) ('0' + value / 10);
+        buffer[offset + 1] = (char) ('0' + value % 10);
+        return offset + 2;
+    }
+
+    private int appendNumber(long value, int offset) {
+        int start = offset;
+        do {
+            buffer[offset++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+
+        for (int i = start, j = offset - 1; i < j; i++, j--) {
+            char tmp = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = tmp;
+        }
+        return offset;
+    }
+}
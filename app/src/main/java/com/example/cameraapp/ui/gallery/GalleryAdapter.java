@@ -1,91 +1,469 @@
 package com.example.cameraapp.ui.gallery;
 
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions;
+import com.example.cameraapp.IoScheduler;
 import com.example.cameraapp.R;
 import com.example.cameraapp.databinding.ItemGalleryBinding;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Set;
 
 public class GalleryAdapter extends RecyclerView.Adapter<GalleryAdapter.GalleryViewHolder> {
 
-    private final List<MediaItem> items = new ArrayList<>();
+    private static final int LOAD_MORE_THRESHOLD = GalleryFragment.GRID_SPAN_COUNT * 6;
+
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    private static final int DIFF_SIZE_LIMIT = 5000;
+    private static final DrawableTransitionOptions CROSS_FADE = DrawableTransitionOptions.withCrossFade();
+
+    private MediaTable items = new MediaTable();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Runnable> deferredUpdates = new ArrayList<>();
+    private volatile int generation = 0;
+    private boolean diffPending = false;
+    private MediaTable pendingItems;
+    // Rows strictly older than this key came from the gallery index and have
+    // not been confirmed by a MediaStore page yet.
+    private boolean hasProvisionalRows = false;
+    private long provisionalDateAdded;
+    private long provisionalId;
     private final OnItemClickListener listener;
-    private final SimpleDateFormat dateFormat;
+    private final DayLabelCache dayLabels = new DayLabelCache();
+    private OnLoadMoreListener loadMoreListener;
+    private int thumbnailSize = MediaThumbnail.tierFor(0);
+    private ThumbnailPreloader preloader;
+    private final Set<Long> selectedIds = new HashSet<>();
+    private OnSelectionChangedListener selectionListener;
 
     public interface OnItemClickListener {
         void onItemClick(MediaItem item, int position);
-        void onItemLongClick(MediaItem item, int position);
+    }
+
+    public interface OnSelectionChangedListener {
+        void onSelectionChanged(int selectedCount);
+    }
+
+    public interface OnLoadMoreListener {
+        void onLoadMore();
     }
 
     public GalleryAdapter(OnItemClickListener listener) {
         this.listener = listener;
-        this.dateFormat = new SimpleDateFormat("dd MMM yyyy", new Locale("ru"));
     }
 
-    public void setItems(List<MediaItem> newItems) {
-        DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(new DiffUtil.Callback() {
-            @Override
-            public int getOldListSize() {
-                return items.size();
+    /**
+     * Replaces the rows. Updates queued behind a diff that this call supersedes
+     * are kept and replayed against {@code newItems} once it is committed; they
+     * are all keyed by id, so they apply to whichever list ends up current.
+     */
+    public void setItems(MediaTable newItems) {
+        int diffGeneration = ++generation;
+        MediaTable oldItems = items;
+
+        if (oldItems.isEmpty()) {
+            commitItems(newItems);
+            notifyItemRangeInserted(0, newItems.size());
+            runDeferredUpdates();
+            return;
+        }
+        if (newItems.isEmpty()) {
+            commitItems(newItems);
+            notifyItemRangeRemoved(0, oldItems.size());
+            runDeferredUpdates();
+            return;
+        }
+        if (isAppendOf(oldItems, newItems)) {
+            commitItems(newItems);
+            notifyItemRangeInserted(oldItems.size(), newItems.size() - oldItems.size());
+            runDeferredUpdates();
+            return;
+        }
+        if (oldItems.size() + newItems.size() > DIFF_SIZE_LIMIT) {
+            commitItems(newItems);
+            notifyDataSetChanged();
+            runDeferredUpdates();
+            return;
+        }
+
+        diffPending = true;
+        pendingItems = newItems;
+        // DIFF drops the oldest queued diff when full; only a diff that a later
+        // setItems() already superseded can be waiting behind a newer one.
+        boolean queued = IoScheduler.getInstance().execute(IoScheduler.Lane.DIFF, null, () -> {
+            if (diffGeneration != generation) return;
+            DiffUtil.DiffResult diffResult =
+                    DiffUtil.calculateDiff(new MediaTableDiffCallback(oldItems, newItems));
+            mainHandler.post(() -> {
+                if (diffGeneration != generation) return;
+                commitItems(newItems);
+                diffResult.dispatchUpdatesTo(this);
+                runDeferredUpdates();
+            });
+        });
+        if (!queued) {
+            commitItems(newItems);
+            notifyDataSetChanged();
+            runDeferredUpdates();
+        }
+    }
+
+    private void commitItems(MediaTable newItems) {
+        items = newItems;
+        diffPending = false;
+        pendingItems = null;
+        retainSelection();
+        if (preloader != null) {
+            preloader.reset();
+        }
+    }
+
+    private void retainSelection() {
+        if (selectedIds.isEmpty()) return;
+        Set<Long> retained = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (selectedIds.contains(items.getId(i))) {
+                retained.add(items.getId(i));
             }
+        }
+        if (retained.size() == selectedIds.size()) return;
+        selectedIds.retainAll(retained);
+        dispatchSelectionChanged();
+    }
+
+    private void runDeferredUpdates() {
+        if (deferredUpdates.isEmpty()) return;
+        List<Runnable> updates = new ArrayList<>(deferredUpdates);
+        deferredUpdates.clear();
+        for (Runnable update : updates) {
+            update.run();
+        }
+    }
 
-            @Override
-            public int getNewListSize() {
-                return newItems.size();
+    private boolean deferIfDiffing(Runnable update) {
+        if (!diffPending) return false;
+        deferredUpdates.add(update);
+        return true;
+    }
+
+    private static boolean isAppendOf(MediaTable oldItems, MediaTable newItems) {
+        if (newItems.size() < oldItems.size()) return false;
+        for (int i = 0; i < oldItems.size(); i++) {
+            if (oldItems.getId(i) != newItems.getId(i)
+                    || !MediaTableDiffCallback.sameContents(oldItems, i, newItems, i)) {
+                return false;
             }
+        }
+        return true;
+    }
+
+    public void setThumbnailSize(int sizePx) {
+        this.thumbnailSize = sizePx;
+    }
+
+    public int getThumbnailSize() {
+        return thumbnailSize;
+    }
+
+    public void setPreloader(ThumbnailPreloader preloader) {
+        this.preloader = preloader;
+    }
+
+    RequestBuilder<Drawable> thumbnailRequest(RequestManager requestManager, int position) {
+        return thumbnailRequest(requestManager, thumbnailFor(position, null));
+    }
+
+    /** Returns {@code reuse} if it already describes {@code position}, otherwise a new model. */
+    MediaThumbnail thumbnailFor(int position, @Nullable MediaThumbnail reuse) {
+        if (reuse != null && reuse.matches(items.getId(position), items.isVideo(position),
+                items.getDateModified(position), thumbnailSize)) {
+            return reuse;
+        }
+        return new MediaThumbnail(items.getId(position),
+                items.isVideo(position), items.getDateModified(position), thumbnailSize);
+    }
+
+    RequestBuilder<Drawable> thumbnailRequest(RequestManager requestManager, MediaThumbnail thumbnail) {
+        return thumbnailRequest(requestManager, thumbnail, thumbnailSize);
+    }
+
+    /**
+     * The grid's cell request. Anything that wants to hit the grid's memory
+     * cache entry for a row (the viewer placeholder) must build it here, since
+     * the override size and transform are part of Glide's cache key.
+     */
+    public static RequestBuilder<Drawable> thumbnailRequest(RequestManager requestManager,
+                                                            MediaThumbnail thumbnail, int sizePx) {
+        return requestManager
+                .load(thumbnail)
+                .override(sizePx)
+                .diskCacheStrategy(DiskCacheStrategy.NONE)
+                .centerCrop();
+    }
+
+    public void setOnLoadMoreListener(OnLoadMoreListener listener) {
+        this.loadMoreListener = listener;
+    }
+
+    /**
+     * Marks every row, freshly drawn from the gallery index, as provisional. They
+     * stay on screen, so a grid drawn from the index neither shrinks nor jumps
+     * when the first pages arrive, and {@link #mergePage} swaps them for
+     * MediaStore rows page by page.
+     */
+    public void markProvisional() {
+        hasProvisionalRows = !items.isEmpty();
+        provisionalDateAdded = Long.MAX_VALUE;
+        provisionalId = Long.MAX_VALUE;
+    }
+
+    /** Like {@link #markProvisional()}, but only for rows {@code loader} has not reached. */
+    public void markProvisional(MediaPageLoader loader) {
+        int first = 0;
+        while (first < items.size()
+                && loader.isWithinLoadedRange(items.getDateAdded(first), items.getId(first))) {
+            first++;
+        }
+        hasProvisionalRows = first < items.size();
+        provisionalDateAdded = first == 0 ? Long.MAX_VALUE : items.getDateAdded(first - 1);
+        provisionalId = first == 0 ? Long.MAX_VALUE : items.getId(first - 1);
+    }
 
-            @Override
-            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
-                return items.get(oldItemPosition).getId() == newItems.get(newItemPosition).getId();
+    public void clearProvisional() {
+        hasProvisionalRows = false;
+    }
+
+    public boolean hasProvisionalRows() {
+        return hasProvisionalRows;
+    }
+
+    private boolean isProvisional(int position) {
+        if (!hasProvisionalRows) return false;
+        long dateAdded = items.getDateAdded(position);
+        return dateAdded < provisionalDateAdded
+                || (dateAdded == provisionalDateAdded && items.getId(position) < provisionalId);
+    }
+
+    /**
+     * Replaces the provisional rows {@code page} covers with the page, keeping
+     * the confirmed rows before it and, unless paging is {@code exhausted},
+     * the provisional rows after it.
+     */
+    public void mergePage(MediaTable page, boolean exhausted) {
+        if (deferIfDiffing(() -> mergePage(page, exhausted))) return;
+        MediaTable merged = new MediaTable(items.size() + page.size());
+        int position = 0;
+        while (position < items.size() && !isProvisional(position)) {
+            position++;
+        }
+        merged.addAll(items, 0, position);
+        merged.addAll(page);
+
+        hasProvisionalRows = false;
+        if (!exhausted && !page.isEmpty()) {
+            provisionalDateAdded = page.getDateAdded(page.size() - 1);
+            provisionalId = page.getId(page.size() - 1);
+            hasProvisionalRows = true;
+            for (; position < items.size(); position++) {
+                if (isProvisional(position)) break;
             }
+            merged.addAll(items, position, items.size());
+            hasProvisionalRows = position < items.size();
+        }
+        setItems(merged);
+    }
+
+    public void appendItems(MediaTable page) {
+        if (page.isEmpty() || deferIfDiffing(() -> appendMissing(page))) return;
+        int start = items.size();
+        mutableItems().addAll(page);
+        notifyItemRangeInserted(start, page.size());
+    }
 
-            @Override
-            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-                MediaItem oldItem = items.get(oldItemPosition);
-                MediaItem newItem = newItems.get(newItemPosition);
-                return oldItem.getUri().equals(newItem.getUri()) &&
-                       oldItem.getType() == newItem.getType();
+    /** Replays a deferred page: the list it was loaded for may already hold some of its rows. */
+    private void appendMissing(MediaTable page) {
+        if (deferIfDiffing(() -> appendMissing(page))) return;
+        MediaTable missing = new MediaTable(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            if (items.indexOf(page.getId(i)) < 0) {
+                missing.add(page.getItem(i));
             }
-        });
+        }
+        appendItems(missing);
+    }
 
-        items.clear();
-        items.addAll(newItems);
-        diffResult.dispatchUpdatesTo(this);
+    public void applyChanges(MediaTable upserts, Set<Long> deletedIds) {
+        if (deferIfDiffing(() -> applyChanges(upserts, deletedIds))) return;
+        if (preloader != null) {
+            preloader.reset();
+        }
+        mutableItems();
+
+        for (int i = items.size() - 1; i >= 0; i--) {
+            if (deletedIds.contains(items.getId(i))) {
+                items.remove(i);
+                notifyItemRemoved(i);
+            }
+        }
+        if (selectedIds.removeAll(deletedIds)) {
+            dispatchSelectionChanged();
+        }
+
+        for (int i = 0; i < upserts.size(); i++) {
+            MediaItem item = upserts.getItem(i);
+            int existing = items.indexOf(item.getId());
+            if (existing >= 0) {
+                items.remove(existing);
+            }
+            int position = insertionPoint(item);
+            items.insert(position, item);
+            if (existing < 0) {
+                notifyItemInserted(position);
+            } else {
+                if (existing != position) {
+                    notifyItemMoved(existing, position);
+                }
+                notifyItemChanged(position);
+            }
+        }
+    }
+
+    private int insertionPoint(MediaItem item) {
+        int low = 0;
+        int high = items.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            boolean otherIsNewer = items.getDateAdded(mid) != item.getDateAdded()
+                    ? items.getDateAdded(mid) > item.getDateAdded()
+                    : items.getId(mid) > item.getId();
+            if (otherIsNewer) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 
     public void addItem(MediaItem item) {
-        items.add(0, item);
+        if (diffPending) {
+            MediaTable upsert = new MediaTable(1);
+            upsert.add(item);
+            deferIfDiffing(() -> applyChanges(upsert, new HashSet<>()));
+            return;
+        }
+        mutableItems().insert(0, item);
         notifyItemInserted(0);
     }
 
     public void removeItem(int position) {
+        if (diffPending) {
+            // The position refers to the list being diffed in; pin it to its id.
+            if (position >= 0 && position < pendingItems.size()) {
+                Set<Long> ids = new HashSet<>();
+                ids.add(pendingItems.getId(position));
+                deferIfDiffing(() -> removeItems(ids));
+            }
+            return;
+        }
         if (position >= 0 && position < items.size()) {
-            items.remove(position);
+            mutableItems().remove(position);
             notifyItemRemoved(position);
         }
     }
 
     public MediaItem getItem(int position) {
         if (position >= 0 && position < items.size()) {
-            return items.get(position);
+            return items.getItem(position);
         }
         return null;
     }
 
-    public List<MediaItem> getItems() {
-        return new ArrayList<>(items);
+    /**
+     * Returns the current rows frozen and by reference. The adapter copies
+     * them the next time it has to change a row itself.
+     */
+    public MediaTable getItems() {
+        return items.freeze();
+    }
+
+    private MediaTable mutableItems() {
+        if (items.isFrozen()) {
+            items = items.copy();
+        }
+        return items;
+    }
+
+    public void setOnSelectionChangedListener(OnSelectionChangedListener listener) {
+        this.selectionListener = listener;
+    }
+
+    public boolean isSelectionMode() {
+        return !selectedIds.isEmpty();
+    }
+
+    public int getSelectedCount() {
+        return selectedIds.size();
+    }
+
+    public MediaTable getSelectedItems() {
+        MediaTable selected = new MediaTable(selectedIds.size());
+        for (int i = 0; i < items.size(); i++) {
+            if (selectedIds.contains(items.getId(i))) {
+                selected.add(items.getItem(i));
+            }
+        }
+        return selected;
+    }
+
+    public void toggleSelection(int position) {
+        if (position < 0 || position >= items.size()) return;
+        long id = items.getId(position);
+        if (!selectedIds.remove(id)) {
+            selectedIds.add(id);
+        }
+        notifyItemChanged(position, PAYLOAD_SELECTION);
+        dispatchSelectionChanged();
+    }
+
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) return;
+        selectedIds.clear();
+        notifyItemRangeChanged(0, items.size(), PAYLOAD_SELECTION);
+        dispatchSelectionChanged();
+    }
+
+    /**
+     * Drops every row in {@code ids} with a single diff instead of one
+     * notifyItemRemoved per row.
+     */
+    public void removeItems(Set<Long> ids) {
+        if (ids.isEmpty() || deferIfDiffing(() -> removeItems(ids))) return;
+        setItems(items.without(ids));
+    }
+
+    private void dispatchSelectionChanged() {
+        if (selectionListener != null) {
+            selectionListener.onSelectionChanged(selectedIds.size());
+        }
     }
 
     @NonNull
@@ -96,10 +474,24 @@ public class GalleryAdapter extends RecyclerView.Adapter<GalleryAdapter.GalleryV
         return new GalleryViewHolder(binding);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull GalleryViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        if (payloads.size() == 1 && payloads.get(0) == PAYLOAD_SELECTION) {
+            holder.bindSelection(position);
+            return;
+        }
+        onBindViewHolder(holder, position);
+    }
+
     @Override
     public void onBindViewHolder(@NonNull GalleryViewHolder holder, int position) {
-        MediaItem item = items.get(position);
-        holder.bind(item, position);
+        holder.bind(position);
+
+        if (loadMoreListener != null && (position >= items.size() - LOAD_MORE_THRESHOLD
+                || isProvisional(Math.min(position + LOAD_MORE_THRESHOLD, items.size() - 1)))) {
+            loadMoreListener.onLoadMore();
+        }
     }
 
     @Override
@@ -110,43 +502,69 @@ public class GalleryAdapter extends RecyclerView.Adapter<GalleryAdapter.GalleryV
     class GalleryViewHolder extends RecyclerView.ViewHolder {
 
         private final ItemGalleryBinding binding;
+        private final DurationFormatter durationFormatter = new DurationFormatter();
+        private MediaThumbnail boundThumbnail;
+        private String boundDayLabel;
 
         GalleryViewHolder(ItemGalleryBinding binding) {
             super(binding.getRoot());
             this.binding = binding;
+
+            binding.getRoot().setOnClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position == RecyclerView.NO_POSITION) return;
+                if (isSelectionMode()) {
+                    toggleSelection(position);
+                } else if (listener != null) {
+                    listener.onItemClick(items.getItem(position), position);
+                }
+            });
+
+            binding.getRoot().setOnLongClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position == RecyclerView.NO_POSITION) return false;
+                toggleSelection(position);
+                return true;
+            });
         }
 
-        void bind(MediaItem item, int position) {
-            Glide.with(binding.imgThumbnail.getContext())
-                    .load(item.getUri())
-                    .centerCrop()
-                    .placeholder(R.drawable.gallery_item_background)
-                    .error(R.drawable.gallery_item_background)
-                    .transition(DrawableTransitionOptions.withCrossFade())
-                    .into(binding.imgThumbnail);
+        void bind(int position) {
+            if (preloader != null) {
+                preloader.onBind(position);
+            }
+            // Rebinding the same row keeps the running or finished Glide request;
+            // only a different row pays for a new one.
+            MediaThumbnail thumbnail = thumbnailFor(position, boundThumbnail);
+            if (thumbnail != boundThumbnail) {
+                boundThumbnail = thumbnail;
+                thumbnailRequest(Glide.with(binding.imgThumbnail.getContext()), thumbnail)
+                        .placeholder(R.drawable.gallery_item_background)
+                        .error(R.drawable.gallery_item_background)
+                        .transition(CROSS_FADE)
+                        .into(binding.imgThumbnail);
+            }
 
-            if (item.isVideo()) {
+            if (items.isVideo(position)) {
                 binding.videoIndicator.setVisibility(View.VISIBLE);
-                binding.tvDuration.setText(item.getFormattedDuration());
+                durationFormatter.setText(binding.tvDuration, items.getDuration(position));
             } else {
                 binding.videoIndicator.setVisibility(View.GONE);
             }
 
-            binding.tvDate.setText(dateFormat.format(item.getDate()));
-
-            binding.getRoot().setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onItemClick(item, position);
-                }
-            });
+            String dayLabel = dayLabels.format(items.getDateAdded(position));
+            if (dayLabel != boundDayLabel) {
+                boundDayLabel = dayLabel;
+                binding.tvDate.setText(dayLabel);
+            }
+            bindSelection(position);
+        }
 
-            binding.getRoot().setOnLongClickListener(v -> {
-                if (listener != null) {
-                    listener.onItemLongClick(item, position);
-                    return true;
-                }
-                return false;
-            });
+        void bindSelection(int position) {
+            // selectedIds boxes the id, so skip the lookup outside selection mode.
+            boolean selected = !selectedIds.isEmpty() && selectedIds.contains(items.getId(position));
+            int visibility = selected ? View.VISIBLE : View.GONE;
+            binding.selectionOverlay.setVisibility(visibility);
+            binding.imgSelected.setVisibility(visibility);
         }
     }
 }
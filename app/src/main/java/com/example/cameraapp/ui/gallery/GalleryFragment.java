@@ -1,13 +1,21 @@
 package com.example.cameraapp.ui.gallery;
 
 import android.Manifest;
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.app.RecoverableSecurityException;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
-import android.content.ContentUris;
+import android.content.IntentSender;
+import android.content.OperationApplicationException;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Build;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
 import android.provider.MediaStore;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -15,10 +23,14 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 
+import androidx.activity.OnBackPressedCallback;
 import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.IntentSenderRequest;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.content.ContextCompat;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
@@ -27,27 +39,57 @@ import androidx.fragment.app.Fragment;
 import androidx.navigation.Navigation;
 import androidx.recyclerview.widget.GridLayoutManager;
 
+import com.example.cameraapp.IoScheduler;
 import com.example.cameraapp.R;
 import com.example.cameraapp.databinding.FragmentGalleryBinding;
+import com.example.cameraapp.ui.viewer.MediaSnapshotStore;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
 
 public class GalleryFragment extends Fragment {
 
     private static final String TAG = "GalleryFragment";
     private FragmentGalleryBinding binding;
     private GalleryAdapter adapter;
-    private static final int GRID_SPAN_COUNT = 3;
-    private ExecutorService executor;
+    public static final int GRID_SPAN_COUNT = 3;
+    private static final long REFRESH_DEBOUNCE_MS = 300;
+    private IoScheduler.Token ioToken;
+    private MediaPageLoader pageLoader;
+    private MediaChangeTracker changeTracker;
+    private GalleryIndex galleryIndex;
+    private ThumbnailPreloader preloader;
+    private boolean isLoadingPage = false;
+    private boolean isFullLoadInFlight = false;
+    private boolean isRefreshInFlight = false;
+    private int queryCount = 0;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable debouncedRefresh = this::refreshMedia;
+    private OnBackPressedCallback selectionBackCallback;
+    private Set<Long> pendingDeleteIds = Collections.emptySet();
+    private MediaTable pendingConsentItems;
+    private long publishedSnapshotVersion = -1;
+    private boolean indexRowsPending = false;
 
     private final ActivityResultLauncher<String[]> permissionLauncher =
             registerForActivityResult(new ActivityResultContracts.RequestMultiplePermissions(),
                     this::handlePermissionResult);
 
+    private final ActivityResultLauncher<IntentSenderRequest> deleteRequestLauncher =
+            registerForActivityResult(new ActivityResultContracts.StartIntentSenderForResult(),
+                    result -> handleDeleteRequestResult(result.getResultCode()));
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        changeTracker = new MediaChangeTracker(requireContext());
+        changeTracker.register();
+    }
+
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
@@ -58,11 +100,72 @@ public class GalleryFragment extends Fragment {
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
-        executor = Executors.newSingleThreadExecutor();
+        ioToken = IoScheduler.bindTo(getViewLifecycleOwner());
+        isFullLoadInFlight = false;
+        isRefreshInFlight = false;
+        queryCount = 0;
+        changeTracker.setOnChangeListener(this::scheduleRefresh);
+        galleryIndex = GalleryIndex.getInstance(requireContext());
         setupEdgeToEdge();
         setupRecyclerView();
         setupButtons();
-        checkPermissionsAndLoadMedia();
+        setupSelectionMode();
+        if (!restoreFromSnapshot()) {
+            checkPermissionsAndLoadMedia();
+        }
+    }
+
+    /**
+     * Shows the snapshot handed to the viewer again when coming back from it,
+     * minus whatever the viewer deleted, instead of re-scanning MediaStore.
+     * The change tracker stays registered meanwhile, so anything else that
+     * changed is picked up by the usual delta refresh.
+     */
+    private boolean restoreFromSnapshot() {
+        MediaSnapshotStore store = MediaSnapshotStore.getInstance();
+        MediaSnapshotStore.Snapshot snapshot = store.getSnapshot();
+        if (pageLoader == null || snapshot.version != publishedSnapshotVersion
+                || !hasRequiredPermissions()) {
+            return false;
+        }
+
+        // A page that finished loading after the view went away moved the
+        // loader past rows the snapshot never got; continue from the snapshot.
+        // Its tail may still be index rows, which the loader has not reached.
+        if (!snapshot.items.isEmpty() && !indexRowsPending) {
+            int last = snapshot.items.size() - 1;
+            long lastDateAdded = snapshot.items.getDateAdded(last);
+            long lastId = snapshot.items.getId(last);
+            if (!pageLoader.isPositionedAfter(lastDateAdded, lastId)) {
+                Log.d(TAG, "Page loader is ahead of the snapshot, resuming after its last row");
+                pageLoader = MediaPageLoader.resumingAfter(
+                        requireContext().getContentResolver(), lastDateAdded, lastId);
+            }
+        }
+
+        Set<Long> deleted = store.consumeDeletions(snapshot.version);
+        MediaTable items = deleted.isEmpty() ? snapshot.items : snapshot.items.without(deleted);
+        isLoadingPage = false;
+        Log.d(TAG, "Restoring " + items.size() + " items from snapshot v" + snapshot.version);
+        if (items.isEmpty()) {
+            showEmptyState();
+        } else {
+            showGallery(items);
+            if (indexRowsPending) {
+                adapter.markProvisional(pageLoader);
+            }
+        }
+        return true;
+    }
+
+    private void applyViewerDeletions() {
+        if (publishedSnapshotVersion < 0) return;
+        Set<Long> deleted = MediaSnapshotStore.getInstance().consumeDeletions(publishedSnapshotVersion);
+        if (deleted.isEmpty()) return;
+        adapter.removeItems(deleted);
+        if (adapter.getItemCount() == 0) {
+            showEmptyState();
+        }
     }
 
     private void setupEdgeToEdge() {
@@ -79,17 +182,10 @@ public class GalleryFragment extends Fragment {
     }
 
     private void setupRecyclerView() {
-        adapter = new GalleryAdapter(new GalleryAdapter.OnItemClickListener() {
-            @Override
-            public void onItemClick(MediaItem item, int position) {
-                openMediaViewer(item, position);
-            }
-
-            @Override
-            public void onItemLongClick(MediaItem item, int position) {
-                showDeleteDialog(item, position);
-            }
-        });
+        adapter = new GalleryAdapter(this::openMediaViewer);
+        adapter.setOnSelectionChangedListener(this::updateSelectionUi);
+        adapter.setOnLoadMoreListener(this::loadNextPage);
+        adapter.setThumbnailSize(getResources().getDisplayMetrics().widthPixels / GRID_SPAN_COUNT);
 
         GridLayoutManager layoutManager = new GridLayoutManager(requireContext(), GRID_SPAN_COUNT);
         binding.rvGallery.setLayoutManager(layoutManager);
@@ -97,12 +193,52 @@ public class GalleryFragment extends Fragment {
 
         int spacing = getResources().getDimensionPixelSize(R.dimen.gallery_item_spacing);
         binding.rvGallery.addItemDecoration(new GridSpacingItemDecoration(GRID_SPAN_COUNT, spacing));
+
+        preloader = new ThumbnailPreloader(binding.rvGallery, layoutManager, adapter);
+        adapter.setPreloader(preloader);
+        binding.rvGallery.addOnScrollListener(preloader);
     }
 
     private void setupButtons() {
         binding.btnCreateContent.setOnClickListener(v -> navigateToPhoto());
     }
 
+    private void setupSelectionMode() {
+        selectionBackCallback = new OnBackPressedCallback(false) {
+            @Override
+            public void handleOnBackPressed() {
+                adapter.clearSelection();
+            }
+        };
+        requireActivity().getOnBackPressedDispatcher()
+                .addCallback(getViewLifecycleOwner(), selectionBackCallback);
+
+        binding.toolbar.setNavigationOnClickListener(v -> adapter.clearSelection());
+        binding.toolbar.setOnMenuItemClickListener(menuItem -> {
+            if (menuItem.getItemId() == R.id.action_delete_selected) {
+                deleteSelected();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void updateSelectionUi(int selectedCount) {
+        if (binding == null) return;
+        selectionBackCallback.setEnabled(selectedCount > 0);
+        if (selectedCount > 0) {
+            binding.toolbar.setTitle(getString(R.string.selection_count, selectedCount));
+            binding.toolbar.setNavigationIcon(R.drawable.ic_back);
+            if (binding.toolbar.getMenu().size() == 0) {
+                binding.toolbar.inflateMenu(R.menu.gallery_selection_menu);
+            }
+        } else {
+            binding.toolbar.setTitle(R.string.nav_gallery);
+            binding.toolbar.setNavigationIcon(null);
+            binding.toolbar.getMenu().clear();
+        }
+    }
+
     private void checkPermissionsAndLoadMedia() {
         if (hasRequiredPermissions()) {
             loadMediaFiles();
@@ -148,176 +284,190 @@ public class GalleryFragment extends Fragment {
 
     private void loadMediaFiles() {
         if (binding == null) return;
-        
-        binding.progressBar.setVisibility(View.VISIBLE);
-        binding.emptyState.setVisibility(View.GONE);
-        binding.rvGallery.setVisibility(View.GONE);
+        if (isFullLoadInFlight) {
+            Log.d(TAG, "Full load already in flight, attaching to it");
+            return;
+        }
 
-        executor.execute(() -> {
-            List<MediaItem> mediaItems = new ArrayList<>();
-            
-            List<MediaItem> images = loadImages();
-            List<MediaItem> videos = loadVideos();
-            
-            Log.d(TAG, "Loaded images: " + images.size());
-            Log.d(TAG, "Loaded videos: " + videos.size());
-            
-            mediaItems.addAll(images);
-            mediaItems.addAll(videos);
-            
-            mediaItems.sort((a, b) -> Long.compare(b.getDateAdded(), a.getDateAdded()));
+        // A full reload of a grid that is already on screen (the change tracker
+        // lost track of MediaStore) runs behind the current rows and swaps them
+        // in with a diff; only an empty grid shows the progress bar.
+        boolean coldStart = adapter.getItemCount() == 0;
+        int reloadCount = adapter.getItemCount();
+        if (coldStart) {
+            binding.progressBar.setVisibility(View.VISIBLE);
+            binding.emptyState.setVisibility(View.GONE);
+            binding.rvGallery.setVisibility(View.GONE);
+        }
+
+        MediaPageLoader loader = new MediaPageLoader(requireContext().getContentResolver());
+        MediaChangeTracker tracker = changeTracker;
+        GalleryIndex index = galleryIndex;
+        pageLoader = loader;
+        isLoadingPage = true;
+        isFullLoadInFlight = true;
+        queryCount++;
+
+        boolean queued = IoScheduler.getInstance().execute(IoScheduler.Lane.QUERY, ioToken, () -> {
+            MediaTable indexed = coldStart ? index.read() : new MediaTable();
+            if (!indexed.isEmpty() && isAdded()) {
+                Log.d(TAG, "Rendering " + indexed.size() + " items from index");
+                requireActivity().runOnUiThread(() -> {
+                    if (binding == null || loader != pageLoader) return;
+                    binding.progressBar.setVisibility(View.GONE);
+                    showGallery(indexed);
+                    adapter.markProvisional();
+                });
+            }
+
+            tracker.markSynced();
+            MediaTable mediaItems = loader.loadNextPage();
+            while (mediaItems.size() < reloadCount && loader.hasMore()) {
+                mediaItems.addAll(loader.loadNextPage());
+            }
+            // A populated index is refreshed with every loaded page on onDestroyView;
+            // writing only the first page here would shrink it.
+            if (indexed.isEmpty()) {
+                index.write(mediaItems);
+            }
             
             if (isAdded() && binding != null) {
                 requireActivity().runOnUiThread(() -> {
-                    if (binding == null) return;
+                    if (binding == null || loader != pageLoader) return;
+                    isLoadingPage = false;
+                    isFullLoadInFlight = false;
                     binding.progressBar.setVisibility(View.GONE);
                     
-                    Log.d(TAG, "Total media items: " + mediaItems.size());
+                    Log.d(TAG, "First page media items: " + mediaItems.size());
                     
+                    if (adapter.hasProvisionalRows()) {
+                        // Swap the index rows the page covers and keep the rest, so
+                        // the grid neither shrinks nor loses the scroll position.
+                        adapter.mergePage(mediaItems, !loader.hasMore());
+                        prefetchPosters(mediaItems, 0, mediaItems.size());
+                    } else if (!mediaItems.isEmpty()) {
+                        showGallery(mediaItems);
+                    }
                     if (mediaItems.isEmpty()) {
                         showEmptyState();
-                        Toast.makeText(requireContext(), 
-                            "Найдено: фото=" + images.size() + ", видео=" + videos.size(), 
-                            Toast.LENGTH_LONG).show();
-                    } else {
-                        showGallery(mediaItems);
+                    }
+                    if (tracker.isDirty()) {
+                        scheduleRefresh();
                     }
                 });
             }
         });
+        if (!queued) {
+            isLoadingPage = false;
+            isFullLoadInFlight = false;
+        }
     }
-    
-    private List<MediaItem> loadImages() {
-        List<MediaItem> images = new ArrayList<>();
-        
-        try {
-            ContentResolver resolver = requireContext().getContentResolver();
-            
-            Uri collection = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
-            
-            String[] projection = {
-                    MediaStore.Images.Media._ID,
-                    MediaStore.Images.Media.DISPLAY_NAME,
-                    MediaStore.Images.Media.DATE_ADDED,
-                    MediaStore.Images.Media.SIZE
-            };
-            
-            String sortOrder = MediaStore.Images.Media.DATE_ADDED + " DESC";
-            
-            try (Cursor cursor = resolver.query(collection, projection, null, null, sortOrder)) {
-                if (cursor != null) {
-                    Log.d(TAG, "Images cursor count: " + cursor.getCount());
-                    
-                    int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
-                    int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DISPLAY_NAME);
-                    int dateColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DATE_ADDED);
-                    int sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.SIZE);
-                    
-                    int count = 0;
-                    while (cursor.moveToNext() && count < 50) {
-                        long id = cursor.getLong(idColumn);
-                        String name = cursor.getString(nameColumn);
-                        long dateAdded = cursor.getLong(dateColumn);
-                        long size = cursor.getLong(sizeColumn);
-                        
-                        Uri contentUri = ContentUris.withAppendedId(
-                                MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
-                        
-                        Log.d(TAG, "Found image: " + name + ", uri: " + contentUri);
-                        
-                        MediaItem item = new MediaItem.Builder()
-                                .setId(id)
-                                .setUri(contentUri)
-                                .setType(MediaItem.MediaType.PHOTO)
-                                .setDisplayName(name)
-                                .setDateAdded(dateAdded)
-                                .setSize(size)
-                                .build();
-                        
-                        images.add(item);
-                        count++;
+
+    private void loadNextPage() {
+        MediaPageLoader loader = pageLoader;
+        if (loader == null || isLoadingPage || !loader.hasMore()) return;
+
+        isLoadingPage = true;
+        boolean queued = IoScheduler.getInstance().execute(IoScheduler.Lane.QUERY, ioToken, () -> {
+            MediaTable page = loader.loadNextPage();
+
+            if (isAdded() && binding != null) {
+                requireActivity().runOnUiThread(() -> {
+                    if (binding == null || loader != pageLoader) return;
+                    isLoadingPage = false;
+                    if (adapter.hasProvisionalRows()) {
+                        adapter.mergePage(page, !loader.hasMore());
+                    } else {
+                        adapter.appendItems(page);
                     }
-                } else {
-                    Log.e(TAG, "Images cursor is null");
-                }
+                    prefetchPosters(page, 0, page.size());
+                });
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading images", e);
+        });
+        if (!queued) {
+            isLoadingPage = false;
         }
-        
-        return images;
     }
-    
-    private List<MediaItem> loadVideos() {
-        List<MediaItem> videos = new ArrayList<>();
-        
-        try {
-            ContentResolver resolver = requireContext().getContentResolver();
-            
-            Uri collection = MediaStore.Video.Media.EXTERNAL_CONTENT_URI;
-            
-            String[] projection = {
-                    MediaStore.Video.Media._ID,
-                    MediaStore.Video.Media.DISPLAY_NAME,
-                    MediaStore.Video.Media.DATE_ADDED,
-                    MediaStore.Video.Media.DURATION,
-                    MediaStore.Video.Media.SIZE
-            };
-            
-            String sortOrder = MediaStore.Video.Media.DATE_ADDED + " DESC";
-            
-            try (Cursor cursor = resolver.query(collection, projection, null, null, sortOrder)) {
-                if (cursor != null) {
-                    Log.d(TAG, "Videos cursor count: " + cursor.getCount());
-                    
-                    int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media._ID);
-                    int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DISPLAY_NAME);
-                    int dateColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DATE_ADDED);
-                    int durationColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DURATION);
-                    int sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.SIZE);
-                    
-                    int count = 0;
-                    while (cursor.moveToNext() && count < 50) {
-                        long id = cursor.getLong(idColumn);
-                        String name = cursor.getString(nameColumn);
-                        long dateAdded = cursor.getLong(dateColumn);
-                        long duration = cursor.getLong(durationColumn);
-                        long size = cursor.getLong(sizeColumn);
-                        
-                        Uri contentUri = ContentUris.withAppendedId(
-                                MediaStore.Video.Media.EXTERNAL_CONTENT_URI, id);
-                        
-                        Log.d(TAG, "Found video: " + name + ", uri: " + contentUri);
-                        
-                        MediaItem item = new MediaItem.Builder()
-                                .setId(id)
-                                .setUri(contentUri)
-                                .setType(MediaItem.MediaType.VIDEO)
-                                .setDisplayName(name)
-                                .setDateAdded(dateAdded)
-                                .setDuration(duration)
-                                .setSize(size)
-                                .build();
-                        
-                        videos.add(item);
-                        count++;
+
+    private void refreshMedia() {
+        MediaPageLoader loader = pageLoader;
+        MediaChangeTracker tracker = changeTracker;
+        if (binding == null || loader == null || !tracker.isDirty()) return;
+        if (isFullLoadInFlight || isRefreshInFlight) return;
+
+        isRefreshInFlight = true;
+        queryCount++;
+        boolean queued = IoScheduler.getInstance().execute(IoScheduler.Lane.QUERY, ioToken, () -> {
+            MediaChangeTracker.Delta delta = tracker.fetchChanges();
+
+            if (isAdded() && binding != null) {
+                requireActivity().runOnUiThread(() -> {
+                    if (binding == null || loader != pageLoader) return;
+                    isRefreshInFlight = false;
+                    if (delta == null) {
+                        loadMediaFiles();
+                    } else {
+                        applyDelta(loader, delta);
+                        if (tracker.isDirty()) {
+                            scheduleRefresh();
+                        }
                     }
-                } else {
-                    Log.e(TAG, "Videos cursor is null");
-                }
+                });
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading videos", e);
+        });
+        if (!queued) {
+            isRefreshInFlight = false;
         }
-        
-        return videos;
     }
 
-    private void showGallery(List<MediaItem> items) {
+    private void scheduleRefresh() {
+        if (!isResumed()) return;
+        mainHandler.removeCallbacks(debouncedRefresh);
+        mainHandler.postDelayed(debouncedRefresh, REFRESH_DEBOUNCE_MS);
+    }
+
+    /**
+     * Number of MediaStore scans (full loads and change fetches) started since
+     * the view was created. A plain screen open should cost exactly one.
+     */
+    @VisibleForTesting
+    int getQueryCount() {
+        return queryCount;
+    }
+
+    private void applyDelta(MediaPageLoader loader, MediaChangeTracker.Delta delta) {
+        if (delta.isEmpty()) return;
+
+        MediaTable upserts = new MediaTable(delta.upserts.size());
+        for (int i = 0; i < delta.upserts.size(); i++) {
+            if (loader.isWithinLoadedRange(delta.upserts.getDateAdded(i), delta.upserts.getId(i))) {
+                upserts.add(delta.upserts.getItem(i));
+            }
+        }
+        adapter.applyChanges(upserts, delta.deletedIds);
+
+        if (adapter.getItemCount() == 0) {
+            showEmptyState();
+        } else {
+            binding.emptyState.setVisibility(View.GONE);
+            binding.rvGallery.setVisibility(View.VISIBLE);
+        }
+    }
+
+    private void showGallery(MediaTable items) {
         if (binding == null) return;
         binding.emptyState.setVisibility(View.GONE);
         binding.rvGallery.setVisibility(View.VISIBLE);
+        adapter.clearProvisional();
         adapter.setItems(items);
+        MediaTable shown = adapter.getItems();
+        prefetchPosters(shown, 0, Math.min(shown.size(), MediaPageLoader.PAGE_SIZE));
+    }
+
+    private void prefetchPosters(MediaTable items, int start, int end) {
+        int cellSize = getResources().getDisplayMetrics().widthPixels / GRID_SPAN_COUNT;
+        ThumbnailProvider.getInstance(requireContext()).prefetchPosters(
+                items, start, end, cellSize, ioToken);
     }
 
     private void showEmptyState() {
@@ -327,7 +477,7 @@ public class GalleryFragment extends Fragment {
     }
 
     private void openMediaViewer(MediaItem item, int position) {
-        com.example.cameraapp.ui.viewer.MediaCache.getInstance().setMediaItems(adapter.getItems());
+        publishedSnapshotVersion = MediaSnapshotStore.getInstance().publish(adapter.getItems()).version;
         
         Bundle args = new Bundle();
         args.putInt("position", position);
@@ -336,40 +486,147 @@ public class GalleryFragment extends Fragment {
                 .navigate(R.id.action_gallery_to_viewer, args);
     }
 
-    private void showDeleteDialog(MediaItem item, int position) {
-        new com.google.android.material.dialog.MaterialAlertDialogBuilder(requireContext())
-                .setTitle(R.string.delete_file)
-                .setMessage("Вы уверены, что хотите удалить этот файл?")
-                .setPositiveButton(R.string.delete_file, (dialog, which) -> deleteItem(item, position))
-                .setNegativeButton(android.R.string.cancel, null)
-                .show();
+    private void deleteSelected() {
+        MediaTable selected = adapter.getSelectedItems();
+        if (selected.isEmpty()) return;
+
+        Set<Long> ids = new HashSet<>();
+        List<Uri> uris = new ArrayList<>(selected.size());
+        for (int i = 0; i < selected.size(); i++) {
+            ids.add(selected.getId(i));
+            uris.add(selected.getUri(i));
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            PendingIntent request = MediaStore.createDeleteRequest(
+                    requireContext().getContentResolver(), uris);
+            pendingDeleteIds = ids;
+            deleteRequestLauncher.launch(new IntentSenderRequest.Builder(request.getIntentSender()).build());
+        } else {
+            new com.google.android.material.dialog.MaterialAlertDialogBuilder(requireContext())
+                    .setTitle(R.string.delete_file)
+                    .setMessage(getString(R.string.delete_selected_confirm, selected.size()))
+                    .setPositiveButton(R.string.delete_file, (dialog, which) -> deleteBatch(selected))
+                    .setNegativeButton(android.R.string.cancel, null)
+                    .show();
+        }
+    }
+
+    private void handleDeleteRequestResult(int resultCode) {
+        if (pendingConsentItems != null) {
+            MediaTable items = pendingConsentItems;
+            pendingConsentItems = null;
+            if (resultCode == Activity.RESULT_OK) {
+                deleteBatch(items);
+            }
+            return;
+        }
+        Set<Long> ids = pendingDeleteIds;
+        pendingDeleteIds = Collections.emptySet();
+        if (resultCode == Activity.RESULT_OK) {
+            onItemsDeleted(ids);
+        }
     }
 
-    private void deleteItem(MediaItem item, int position) {
-        executor.execute(() -> {
+    private void deleteBatch(MediaTable selected) {
+        ContentResolver resolver = requireContext().getContentResolver();
+        if (Build.VERSION.SDK_INT == Build.VERSION_CODES.Q) {
+            deleteEach(resolver, selected);
+            return;
+        }
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(selected.size());
+        for (int i = 0; i < selected.size(); i++) {
+            operations.add(ContentProviderOperation.newDelete(selected.getUri(i)).build());
+        }
+
+        boolean queued = IoScheduler.getInstance().execute(IoScheduler.Lane.DELETE, null, () -> {
+            Set<Long> deleted = new HashSet<>();
             try {
-                int deleted = requireContext().getContentResolver().delete(item.getUri(), null, null);
-                if (isAdded()) {
-                    requireActivity().runOnUiThread(() -> {
-                        if (deleted > 0) {
-                            adapter.removeItem(position);
-                            if (adapter.getItemCount() == 0) {
-                                showEmptyState();
-                            }
-                            Toast.makeText(requireContext(), "Файл удалён", Toast.LENGTH_SHORT).show();
-                        } else {
-                            Toast.makeText(requireContext(), "Не удалось удалить файл", Toast.LENGTH_SHORT).show();
-                        }
-                    });
+                ContentProviderResult[] results = resolver.applyBatch(MediaStore.AUTHORITY, operations);
+                for (int i = 0; i < results.length; i++) {
+                    if (results[i].count != null && results[i].count > 0) {
+                        deleted.add(selected.getId(i));
+                    }
                 }
-            } catch (Exception e) {
-                if (isAdded()) {
-                    requireActivity().runOnUiThread(() -> 
-                        Toast.makeText(requireContext(), "Не удалось удалить файл", Toast.LENGTH_SHORT).show()
-                    );
+            } catch (OperationApplicationException | RemoteException | RuntimeException e) {
+                Log.e(TAG, "Batch delete failed", e);
+            }
+
+            if (isAdded()) {
+                requireActivity().runOnUiThread(() -> onItemsDeleted(deleted));
+            }
+        });
+        if (!queued) {
+            onDeleteRejected();
+        }
+    }
+
+    /**
+     * Android 10 has no bulk delete request, and a row owned by another app
+     * throws RecoverableSecurityException, which would fail a whole batch.
+     * Rows are deleted one by one instead; the first one that needs consent
+     * is confirmed through its IntentSender and the rest are retried after it.
+     */
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void deleteEach(ContentResolver resolver, MediaTable selected) {
+        boolean queued = IoScheduler.getInstance().execute(IoScheduler.Lane.DELETE, null, () -> {
+            Set<Long> deleted = new HashSet<>();
+            MediaTable needsConsent = new MediaTable();
+            IntentSender consentRequest = null;
+            for (int i = 0; i < selected.size(); i++) {
+                try {
+                    if (resolver.delete(selected.getUri(i), null, null) > 0) {
+                        deleted.add(selected.getId(i));
+                    }
+                } catch (RecoverableSecurityException e) {
+                    if (consentRequest == null) {
+                        consentRequest = e.getUserAction().getActionIntent().getIntentSender();
+                    }
+                    needsConsent.add(selected.getItem(i));
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Delete failed: " + selected.getUri(i), e);
                 }
             }
+
+            IntentSender request = consentRequest;
+            if (isAdded()) {
+                requireActivity().runOnUiThread(() -> {
+                    if (request == null || !deleted.isEmpty()) {
+                        onItemsDeleted(deleted);
+                    }
+                    if (request != null && binding != null) {
+                        pendingConsentItems = needsConsent;
+                        deleteRequestLauncher.launch(new IntentSenderRequest.Builder(request).build());
+                    }
+                });
+            }
         });
+        if (!queued) {
+            onDeleteRejected();
+        }
+    }
+
+    /** The DELETE lane was full: nothing was deleted, so say so and leave selection mode. */
+    private void onDeleteRejected() {
+        if (binding == null) return;
+        adapter.clearSelection();
+        Toast.makeText(requireContext(), R.string.delete_failed, Toast.LENGTH_SHORT).show();
+    }
+
+    private void onItemsDeleted(Set<Long> ids) {
+        if (binding == null) return;
+        if (ids.isEmpty()) {
+            Toast.makeText(requireContext(), R.string.delete_failed, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        adapter.clearSelection();
+        adapter.removeItems(ids);
+        if (adapter.getItemCount() == 0) {
+            showEmptyState();
+        }
+        Toast.makeText(requireContext(), getString(R.string.files_deleted, ids.size()),
+                Toast.LENGTH_SHORT).show();
     }
 
     private void navigateToPhoto() {
@@ -380,15 +637,36 @@ public class GalleryFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        loadMediaFiles();
+        applyViewerDeletions();
+        refreshMedia();
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        mainHandler.removeCallbacks(debouncedRefresh);
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
+        if (pageLoader != null) {
+            galleryIndex.scheduleWrite(adapter.getItems());
+        }
+        indexRowsPending = adapter.hasProvisionalRows();
+        changeTracker.setOnChangeListener(null);
+        if (preloader != null) {
+            Log.d(TAG, "Thumbnail prefetch: " + preloader.getStats());
+            preloader.reset();
         }
+        Log.d(TAG, "MediaStore scans this view: " + queryCount);
+        IoScheduler.getInstance().logStats();
         binding = null;
     }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        changeTracker.unregister();
+    }
 }
@@ -0,0 +1,201 @@
+package com.example.cameraapp.ui.gallery;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.cameraapp.IoScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary snapshot of the first rows of the gallery, so a cold open can draw
+ * the grid before MediaStore has answered. Rows are fixed-width records that
+ * point into a UTF-8 name pool after them. Any change to the layout must bump
+ * {@link #VERSION}; files with another version are discarded.
+ * Background writes are coalesced, so a burst of requests costs one write of
+ * the newest snapshot and none of them is silently dropped.
+ */
+public class GalleryIndex {
+
+    private static final String TAG = "GalleryIndex";
+    private static final String FILE_NAME = "gallery.idx";
+
+    private static final int MAGIC = 0x47494458;
+    private static final int VERSION = 3;
+    // magic, version, count, name pool length
+    private static final int HEADER_SIZE = 16;
+    // id, dateAdded, dateModified, size, duration, type, name offset, name length
+    private static final int RECORD_SIZE = 8 + 8 + 8 + 8 + 8 + 1 + 4 + 2;
+    private static final int MAX_NAME_BYTES = Short.MAX_VALUE;
+
+    public static final int MAX_ENTRIES = MediaPageLoader.PAGE_SIZE * 20;
+
+    private static final byte TYPE_PHOTO = 0;
+    private static final byte TYPE_VIDEO = 1;
+
+    private static GalleryIndex instance;
+
+    private final File file;
+    private final Object writeLock = new Object();
+    private MediaTable pendingWrite;
+    private boolean writeQueued = false;
+
+    public static synchronized GalleryIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new GalleryIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private GalleryIndex(Context context) {
+        this.file = new File(context.getNoBackupFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * Writes {@code items} on the index lane. {@code items} must not be mutated
+     * afterwards; pass a frozen table.
+     */
+    public void scheduleWrite(MediaTable items) {
+        synchronized (writeLock) {
+            pendingWrite = items;
+            if (writeQueued) return;
+            writeQueued = IoScheduler.getInstance().execute(IoScheduler.Lane.INDEX, null, this::flushPendingWrite);
+            if (!writeQueued) {
+                Log.w(TAG, "Index write rejected, keeping the previous index");
+                pendingWrite = null;
+            }
+        }
+    }
+
+    private void flushPendingWrite() {
+        MediaTable items;
+        synchronized (writeLock) {
+            items = pendingWrite;
+            pendingWrite = null;
+            writeQueued = false;
+        }
+        if (items != null) {
+            write(items);
+        }
+    }
+
+    /**
+     * Reads the snapshot through a read-only mapping. This is not zero-copy:
+     * each record is copied into the returned table and its name decoded into
+     * a String, which at {@link #MAX_ENTRIES} rows stays far cheaper than the
+     * MediaStore query it stands in for.
+     */
+    public MediaTable read() {
+        if (!file.exists()) return new MediaTable();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long length = channel.size();
+            if (length < HEADER_SIZE) return discard("Index too short");
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != MAGIC) return discard("Bad index magic");
+            if (buffer.getInt() != VERSION) return discard("Index version changed");
+            int count = buffer.getInt();
+            int poolLength = buffer.getInt();
+            long poolStart = HEADER_SIZE + (long) count * RECORD_SIZE;
+            if (count < 0 || poolLength < 0 || poolStart + poolLength != length) {
+                return discard("Index size mismatch");
+            }
+
+            byte[] pool = new byte[poolLength];
+            buffer.position((int) poolStart);
+            buffer.get(pool);
+            buffer.position(HEADER_SIZE);
+
+            MediaTable table = new MediaTable(count);
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                long dateAdded = buffer.getLong();
+                long dateModified = buffer.getLong();
+                long size = buffer.getLong();
+                long duration = buffer.getLong();
+                boolean isVideo = buffer.get() == TYPE_VIDEO;
+                int nameOffset = buffer.getInt();
+                int nameLength = buffer.getShort() & 0xFFFF;
+                if (nameOffset < 0 || nameOffset + nameLength > poolLength) {
+                    return discard("Index name out of range");
+                }
+                String name = new String(pool, nameOffset, nameLength, StandardCharsets.UTF_8);
+                table.add(id, name, dateAdded, dateModified, size, duration, isVideo);
+            }
+            return table;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading gallery index", e);
+            return new MediaTable();
+        }
+    }
+
+    public synchronized void write(MediaTable items) {
+        int count = Math.min(items.size(), MAX_ENTRIES);
+        byte[][] names = new byte[count][];
+        int poolLength = 0;
+        for (int i = 0; i < count; i++) {
+            String name = items.getDisplayName(i);
+            byte[] bytes = name != null ? name.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            names[i] = bytes.length <= MAX_NAME_BYTES ? bytes : new byte[0];
+            poolLength += names[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + count * RECORD_SIZE + poolLength)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(count);
+        buffer.putInt(poolLength);
+        int nameOffset = 0;
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(items.getId(i));
+            buffer.putLong(items.getDateAdded(i));
+            buffer.putLong(items.getDateModified(i));
+            buffer.putLong(items.getSize(i));
+            buffer.putLong(items.getDuration(i));
+            buffer.put(items.isVideo(i) ? TYPE_VIDEO : TYPE_PHOTO);
+            buffer.putInt(nameOffset);
+            buffer.putShort((short) names[i].length);
+            nameOffset += names[i].length;
+        }
+        for (byte[] name : names) {
+            buffer.put(name);
+        }
+        buffer.flip();
+
+        File temp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+             FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing gallery index", e);
+            temp.delete();
+            return;
+        }
+
+        if (!temp.renameTo(file)) {
+            Log.e(TAG, "Could not replace gallery index");
+            temp.delete();
+        }
+    }
+
+    private MediaTable discard(String reason) {
+        Log.d(TAG, reason + ", rebuilding");
+        file.delete();
+        return new MediaTable();
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.cameraapp.ui.gallery;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Watches the image and video collections and, on API 30+, turns what changed
+ * since the last full load into a small {@link Delta} using MediaStore
+ * generation numbers. Generations are per volume, so each external volume the
+ * full load covers is tracked and queried on its own. Returns null from {@link #fetchChanges()} whenever only
+ * a full reload can give the right answer.
+ */
+public class MediaChangeTracker {
+
+    private static final String TAG = "MediaChangeTracker";
+
+    public static class Delta {
+        public final MediaTable upserts;
+        public final Set<Long> deletedIds;
+
+        Delta(MediaTable upserts, Set<Long> deletedIds) {
+            this.upserts = upserts;
+            this.deletedIds = deletedIds;
+        }
+
+        public boolean isEmpty() {
+            return upserts.isEmpty() && deletedIds.isEmpty();
+        }
+    }
+
+    public interface OnChangeListener {
+        void onMediaChanged();
+    }
+
+    private final Context context;
+    private final ContentObserver observer;
+    private OnChangeListener listener;
+
+    private boolean dirty = false;
+    private boolean needsFullReload = false;
+    private final Set<Long> deletedIds = new HashSet<>();
+    private String lastVersion;
+    private Map<String, Long> lastGenerations = Collections.emptyMap();
+
+    public MediaChangeTracker(Context context) {
+        this.context = context.getApplicationContext();
+        this.observer = new ContentObserver(new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange, @Nullable Uri uri) {
+                markDirty(null, 0);
+            }
+
+            @Override
+            public void onChange(boolean selfChange, @NonNull Collection<Uri> uris, int flags) {
+                markDirty(uris, flags);
+            }
+        };
+    }
+
+    public void setOnChangeListener(OnChangeListener listener) {
+        this.listener = listener;
+    }
+
+    public void register() {
+        ContentResolver resolver = context.getContentResolver();
+        resolver.registerContentObserver(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, true, observer);
+        resolver.registerContentObserver(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, true, observer);
+    }
+
+    public void unregister() {
+        context.getContentResolver().unregisterContentObserver(observer);
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Remembers the current MediaStore version and generation. Call before a
+     * full load starts so anything changed while it runs shows up next time.
+     */
+    public synchronized void markSynced() {
+        dirty = false;
+        needsFullReload = false;
+        deletedIds.clear();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            lastVersion = MediaStore.getVersion(context);
+            lastGenerations = readGenerations();
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.R)
+    private Map<String, Long> readGenerations() {
+        Map<String, Long> generations = new HashMap<>();
+        for (String volume : MediaStore.getExternalVolumeNames(context)) {
+            generations.put(volume, MediaStore.getGeneration(context, volume));
+        }
+        return generations;
+    }
+
+    @Nullable
+    public Delta fetchChanges() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) return null;
+
+        String version;
+        Map<String, Long> sinceGenerations;
+        Set<Long> deleted;
+        synchronized (this) {
+            if (needsFullReload || lastGenerations.isEmpty()) return null;
+            version = lastVersion;
+            sinceGenerations = lastGenerations;
+            deleted = new HashSet<>(deletedIds);
+            dirty = false;
+        }
+
+        if (!MediaStore.getVersion(context).equals(version)) {
+            Log.d(TAG, "MediaStore version changed, full reload required");
+            return null;
+        }
+
+        Map<String, Long> generations = readGenerations();
+        if (!generations.keySet().equals(sinceGenerations.keySet())) {
+            Log.d(TAG, "External volumes changed, full reload required");
+            return null;
+        }
+
+        MediaTable upserts = new MediaTable();
+        for (Map.Entry<String, Long> entry : sinceGenerations.entrySet()) {
+            if (!queryChanges(entry.getKey(), entry.getValue(), upserts)) return null;
+        }
+
+        synchronized (this) {
+            lastGenerations = generations;
+            deletedIds.removeAll(deleted);
+            dirty |= needsFullReload || !deletedIds.isEmpty();
+        }
+
+        Log.d(TAG, "Changes since generations " + sinceGenerations + ": upserts=" +
+                upserts.size() + ", deleted=" + deleted.size());
+        return new Delta(upserts, deleted);
+    }
+
+    /** Adds rows of {@code volume} added or modified after {@code sinceGeneration}. */
+    @RequiresApi(Build.VERSION_CODES.R)
+    private boolean queryChanges(String volume, long sinceGeneration, MediaTable upserts) {
+        Bundle queryArgs = new Bundle();
+        String since = String.valueOf(sinceGeneration);
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                MediaPageLoader.MEDIA_TYPE_SELECTION + " AND (" +
+                MediaStore.MediaColumns.GENERATION_ADDED + " > ? OR " +
+                MediaStore.MediaColumns.GENERATION_MODIFIED + " > ?)");
+        queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS,
+                new String[]{since, since});
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, MediaPageLoader.SORT_ORDER);
+
+        try (Cursor cursor = context.getContentResolver().query(
+                MediaStore.Files.getContentUri(volume), MediaPageLoader.PROJECTION, queryArgs, null)) {
+            if (cursor == null) return false;
+            MediaPageLoader.readItems(cursor, upserts, Integer.MAX_VALUE);
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error fetching media changes on " + volume, e);
+            return false;
+        }
+    }
+
+    private void markDirty(@Nullable Collection<Uri> uris, int flags) {
+        synchronized (this) {
+            dirty = true;
+            if (uris == null) {
+                needsFullReload = true;
+            } else if ((flags & ContentResolver.NOTIFY_DELETE) != 0) {
+                for (Uri uri : uris) {
+                    long id = parseId(uri);
+                    if (id < 0) {
+                        needsFullReload = true;
+                    } else {
+                        deletedIds.add(id);
+                    }
+                }
+            }
+        }
+        if (listener != null) {
+            listener.onMediaChanged();
+        }
+    }
+
+    private static long parseId(Uri uri) {
+        try {
+            return ContentUris.parseId(uri);
+        } catch (NumberFormatException | UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+}
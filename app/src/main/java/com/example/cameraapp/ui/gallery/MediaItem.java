@@ -16,6 +16,7 @@ public class MediaItem {
     private final MediaType type;
     private final String displayName;
     private final long dateAdded;
+    private final long dateModified;
     private final long duration;
     private final long size;
 
@@ -25,6 +26,7 @@ public class MediaItem {
         this.type = builder.type;
         this.displayName = builder.displayName;
         this.dateAdded = builder.dateAdded;
+        this.dateModified = builder.dateModified;
         this.duration = builder.duration;
         this.size = builder.size;
     }
@@ -49,6 +51,10 @@ public class MediaItem {
         return dateAdded;
     }
 
+    public long getDateModified() {
+        return dateModified;
+    }
+
     public Date getDate() {
         return new Date(dateAdded * 1000);
     }
@@ -70,6 +76,10 @@ public class MediaItem {
     }
 
     public String getFormattedDuration() {
+        return formatDuration(duration);
+    }
+
+    public static String formatDuration(long duration) {
         if (duration <= 0) return "";
 
         long seconds = (duration / 1000) % 60;
@@ -89,6 +99,7 @@ public class MediaItem {
         private MediaType type;
         private String displayName;
         private long dateAdded;
+        private long dateModified;
         private long duration;
         private long size;
 
@@ -117,6 +128,11 @@ public class MediaItem {
             return this;
         }
 
+        public Builder setDateModified(long dateModified) {
+            this.dateModified = dateModified;
+            return this;
+        }
+
         public Builder setDuration(long duration) {
             this.duration = duration;
             return this;
@@ -0,0 +1,160 @@
+package com.example.cameraapp.ui.gallery;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.provider.MediaStore;
+import android.util.Log;
+
+/**
+ * Loads photos and videos page by page from a single MediaStore.Files query,
+ * keyed on (DATE_ADDED, _ID) so each page continues exactly where the previous
+ * one stopped and the provider does all of the ordering.
+ */
+public class MediaPageLoader {
+
+    private static final String TAG = "MediaPageLoader";
+    public static final int PAGE_SIZE = 60;
+
+    static final String SORT_ORDER =
+            MediaStore.MediaColumns.DATE_ADDED + " DESC, " + MediaStore.MediaColumns._ID + " DESC";
+    private static final String KEYSET_SELECTION =
+            MediaStore.MediaColumns.DATE_ADDED + " < ? OR (" +
+            MediaStore.MediaColumns.DATE_ADDED + " = ? AND " +
+            MediaStore.MediaColumns._ID + " < ?)";
+
+    static final Uri COLLECTION = MediaStore.Files.getContentUri("external");
+    static final String MEDIA_TYPE_SELECTION =
+            MediaStore.Files.FileColumns.MEDIA_TYPE + " IN (" +
+            MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE + "," +
+            MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO + ")";
+    static final String[] PROJECTION = {
+            MediaStore.Files.FileColumns._ID,
+            MediaStore.Files.FileColumns.DISPLAY_NAME,
+            MediaStore.Files.FileColumns.DATE_ADDED,
+            MediaStore.Files.FileColumns.DATE_MODIFIED,
+            MediaStore.Files.FileColumns.SIZE,
+            MediaStore.Files.FileColumns.MEDIA_TYPE,
+            MediaStore.Video.VideoColumns.DURATION
+    };
+
+    private final ContentResolver resolver;
+    private final int pageSize;
+    private boolean exhausted;
+    private boolean hasKey;
+    private long lastDateAdded;
+    private long lastId;
+
+    public MediaPageLoader(ContentResolver resolver) {
+        this(resolver, PAGE_SIZE);
+    }
+
+    public MediaPageLoader(ContentResolver resolver, int pageSize) {
+        this.resolver = resolver;
+        this.pageSize = pageSize;
+    }
+
+    /** A loader whose first page starts right after the row ({@code dateAdded}, {@code id}). */
+    public static MediaPageLoader resumingAfter(ContentResolver resolver, long dateAdded, long id) {
+        MediaPageLoader loader = new MediaPageLoader(resolver);
+        loader.lastDateAdded = dateAdded;
+        loader.lastId = id;
+        loader.hasKey = true;
+        return loader;
+    }
+
+    /** True if the next page starts right after the row ({@code dateAdded}, {@code id}). */
+    public synchronized boolean isPositionedAfter(long dateAdded, long id) {
+        return hasKey && lastDateAdded == dateAdded && lastId == id;
+    }
+
+    public synchronized boolean hasMore() {
+        return !exhausted;
+    }
+
+    public synchronized MediaTable loadNextPage() {
+        MediaTable page = new MediaTable(pageSize);
+        if (exhausted) return page;
+
+        String selection = MEDIA_TYPE_SELECTION;
+        String[] selectionArgs = null;
+        if (hasKey) {
+            String date = String.valueOf(lastDateAdded);
+            selection = MEDIA_TYPE_SELECTION + " AND (" + KEYSET_SELECTION + ")";
+            selectionArgs = new String[]{date, date, String.valueOf(lastId)};
+        }
+
+        try (Cursor cursor = query(selection, selectionArgs, pageSize)) {
+            if (cursor == null) {
+                Log.e(TAG, "Media cursor is null");
+                exhausted = true;
+                return page;
+            }
+
+            readItems(cursor, page, pageSize);
+            if (!page.isEmpty()) {
+                int last = page.size() - 1;
+                lastDateAdded = page.getDateAdded(last);
+                lastId = page.getId(last);
+                hasKey = true;
+            }
+
+            if (page.size() < pageSize) {
+                exhausted = true;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading media page", e);
+            exhausted = true;
+        }
+
+        Log.d(TAG, "Loaded page: " + page.size() + ", more: " + !exhausted);
+        return page;
+    }
+
+    public synchronized boolean isWithinLoadedRange(long dateAdded, long id) {
+        if (exhausted || !hasKey) return exhausted;
+        if (dateAdded != lastDateAdded) {
+            return dateAdded > lastDateAdded;
+        }
+        return id >= lastId;
+    }
+
+    static void readItems(Cursor cursor, MediaTable out, int limit) {
+        int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
+        int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DISPLAY_NAME);
+        int dateColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATE_ADDED);
+        int modifiedColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATE_MODIFIED);
+        int sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.SIZE);
+        int typeColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MEDIA_TYPE);
+        int durationColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.VideoColumns.DURATION);
+
+        int read = 0;
+        while (read < limit && cursor.moveToNext()) {
+            boolean isVideo = cursor.getInt(typeColumn) == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO;
+            out.add(cursor.getLong(idColumn),
+                    cursor.getString(nameColumn),
+                    cursor.getLong(dateColumn),
+                    cursor.getLong(modifiedColumn),
+                    cursor.getLong(sizeColumn),
+                    isVideo ? cursor.getLong(durationColumn) : 0,
+                    isVideo);
+            read++;
+        }
+    }
+
+    private Cursor query(String selection, String[] selectionArgs, int limit) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            Bundle queryArgs = new Bundle();
+            queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
+            queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, selectionArgs);
+            queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, SORT_ORDER);
+            queryArgs.putInt(ContentResolver.QUERY_ARG_LIMIT, limit);
+            return resolver.query(COLLECTION, PROJECTION, queryArgs, null);
+        }
+        // Older providers ignore QUERY_ARG_LIMIT, so the caller stops after
+        // `limit` rows and only the first cursor window is ever filled.
+        return resolver.query(COLLECTION, PROJECTION, selection, selectionArgs, SORT_ORDER);
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.cameraapp.ui.gallery;
+
+import android.content.ContentUris;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Column-oriented list of media rows. Each field lives in its own primitive
+ * array, so loading a page costs a handful of array writes per row instead of
+ * a MediaItem, a Builder and a Uri. Uris and MediaItems are only built when
+ * a caller asks for a specific row.
+ * <p>
+ * A frozen table rejects further writes, so it can be handed to another
+ * screen or thread by reference; writers take a {@link #copy()} instead.
+ */
+public class MediaTable {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private static final byte TYPE_PHOTO = 0;
+    private static final byte TYPE_VIDEO = 1;
+
+    private long[] ids;
+    private long[] datesAdded;
+    private long[] datesModified;
+    private long[] sizes;
+    private long[] durations;
+    private byte[] types;
+    private String[] names;
+    private int size;
+    private volatile boolean frozen = false;
+
+    public MediaTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MediaTable(int capacity) {
+        capacity = Math.max(capacity, 1);
+        ids = new long[capacity];
+        datesAdded = new long[capacity];
+        datesModified = new long[capacity];
+        sizes = new long[capacity];
+        durations = new long[capacity];
+        types = new byte[capacity];
+        names = new String[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public MediaTable freeze() {
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    public long getDateAdded(int index) {
+        return datesAdded[index];
+    }
+
+    public long getDateModified(int index) {
+        return datesModified[index];
+    }
+
+    public long getSize(int index) {
+        return sizes[index];
+    }
+
+    public long getDuration(int index) {
+        return durations[index];
+    }
+
+    public boolean isVideo(int index) {
+        return types[index] == TYPE_VIDEO;
+    }
+
+    public MediaItem.MediaType getType(int index) {
+        return isVideo(index) ? MediaItem.MediaType.VIDEO : MediaItem.MediaType.PHOTO;
+    }
+
+    public String getDisplayName(int index) {
+        return names[index];
+    }
+
+    public Uri getUri(int index) {
+        return ContentUris.withAppendedId(isVideo(index)
+                ? MediaStore.Video.Media.EXTERNAL_CONTENT_URI
+                : MediaStore.Images.Media.EXTERNAL_CONTENT_URI, ids[index]);
+    }
+
+    public MediaItem getItem(int index) {
+        return new MediaItem.Builder()
+                .setId(ids[index])
+                .setUri(getUri(index))
+                .setType(getType(index))
+                .setDisplayName(names[index])
+                .setDateAdded(datesAdded[index])
+                .setDateModified(datesModified[index])
+                .setDuration(durations[index])
+                .setSize(sizes[index])
+                .build();
+    }
+
+    public int indexOf(long id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) return i;
+        }
+        return -1;
+    }
+
+    public void add(long id, String name, long dateAdded, long dateModified, long fileSize,
+                    long duration, boolean isVideo) {
+        checkMutable();
+        ensureCapacity(size + 1);
+        write(size, id, name, dateAdded, dateModified, fileSize, duration, isVideo);
+        size++;
+    }
+
+    public void add(MediaItem item) {
+        insert(size, item);
+    }
+
+    public void addAll(MediaTable other) {
+        addAll(other, 0, other.size);
+    }
+
+    /** Appends rows {@code from} (inclusive) to {@code to} (exclusive) of {@code other}. */
+    public void addAll(MediaTable other, int from, int to) {
+        checkMutable();
+        int count = to - from;
+        if (count <= 0) return;
+        ensureCapacity(size + count);
+        System.arraycopy(other.ids, from, ids, size, count);
+        System.arraycopy(other.datesAdded, from, datesAdded, size, count);
+        System.arraycopy(other.datesModified, from, datesModified, size, count);
+        System.arraycopy(other.sizes, from, sizes, size, count);
+        System.arraycopy(other.durations, from, durations, size, count);
+        System.arraycopy(other.types, from, types, size, count);
+        System.arraycopy(other.names, from, names, size, count);
+        size += count;
+    }
+
+    public void insert(int index, MediaItem item) {
+        checkMutable();
+        ensureCapacity(size + 1);
+        shift(index, 1);
+        size++;
+        set(index, item);
+    }
+
+    public void set(int index, MediaItem item) {
+        checkMutable();
+        write(index, item.getId(), item.getDisplayName(), item.getDateAdded(),
+                item.getDateModified(), item.getSize(), item.getDuration(), item.isVideo());
+    }
+
+    public void remove(int index) {
+        checkMutable();
+        shift(index + 1, -1);
+        size--;
+        names[size] = null;
+    }
+
+    public MediaTable without(Set<Long> excludedIds) {
+        MediaTable result = new MediaTable(size);
+        for (int i = 0; i < size; i++) {
+            if (excludedIds.contains(ids[i])) continue;
+            result.write(result.size++, ids[i], names[i], datesAdded[i], datesModified[i],
+                    sizes[i], durations[i], types[i] == TYPE_VIDEO);
+        }
+        return result;
+    }
+
+    public MediaTable copy() {
+        MediaTable copy = new MediaTable(size);
+        copy.addAll(this);
+        return copy;
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("MediaTable is frozen");
+        }
+    }
+
+    private void write(int index, long id, String name, long dateAdded, long dateModified,
+                       long fileSize, long duration, boolean isVideo) {
+        ids[index] = id;
+        names[index] = name;
+        datesAdded[index] = dateAdded;
+        datesModified[index] = dateModified;
+        sizes[index] = fileSize;
+        durations[index] = duration;
+        types[index] = isVideo ? TYPE_VIDEO : TYPE_PHOTO;
+    }
+
+    private void shift(int from, int delta) {
+        int count = size - from;
+        if (count <= 0) return;
+        System.arraycopy(ids, from, ids, from + delta, count);
+        System.arraycopy(datesAdded, from, datesAdded, from + delta, count);
+        System.arraycopy(datesModified, from, datesModified, from + delta, count);
+        System.arraycopy(sizes, from, sizes, from + delta, count);
+        System.arraycopy(durations, from, durations, from + delta, count);
+        System.arraycopy(types, from, types, from + delta, count);
+        System.arraycopy(names, from, names, from + delta, count);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) return;
+        int capacity = Math.max(required, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, capacity);
+        datesAdded = Arrays.copyOf(datesAdded, capacity);
+        datesModified = Arrays.copyOf(datesModified, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        types = Arrays.copyOf(types, capacity);
+        names = Arrays.copyOf(names, capacity);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.cameraapp.ui.gallery;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * Row-by-id diff between two {@link MediaTable}s for the grid. Diffs run on
+ * the IoScheduler DIFF lane, never on the main thread.
+ */
+public class MediaTableDiffCallback extends DiffUtil.Callback {
+
+    private final MediaTable oldItems;
+    private final MediaTable newItems;
+
+    public MediaTableDiffCallback(MediaTable oldItems, MediaTable newItems) {
+        this.oldItems = oldItems;
+        this.newItems = newItems;
+    }
+
+    static boolean sameContents(MediaTable a, int aPosition, MediaTable b, int bPosition) {
+        return a.isVideo(aPosition) == b.isVideo(bPosition) &&
+               a.getDateAdded(aPosition) == b.getDateAdded(bPosition) &&
+               a.getDateModified(aPosition) == b.getDateModified(bPosition) &&
+               a.getDuration(aPosition) == b.getDuration(bPosition);
+    }
+
+    @Override
+    public int getOldListSize() {
+        return oldItems.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return newItems.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return oldItems.getId(oldItemPosition) == newItems.getId(newItemPosition);
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        return sameContents(oldItems, oldItemPosition, newItems, newItemPosition);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.cameraapp.ui.gallery;
+
+import android.content.ContentUris;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Glide model for a grid-sized thumbnail. Two requests are equal when they
+ * point at the same row, at the same revision, in the same size tier.
+ */
+public class MediaThumbnail {
+
+    private static final int[] SIZE_TIERS = {128, 256, 512, 1024};
+
+    private final long id;
+    private final boolean video;
+    private final long dateModified;
+    private final int sizeTier;
+
+    public MediaThumbnail(long id, boolean video, long dateModified, int sizePx) {
+        this.id = id;
+        this.video = video;
+        this.dateModified = dateModified;
+        this.sizeTier = tierFor(sizePx);
+    }
+
+    public static int tierFor(int sizePx) {
+        for (int tier : SIZE_TIERS) {
+            if (sizePx <= tier) return tier;
+        }
+        return SIZE_TIERS[SIZE_TIERS.length - 1];
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Uri getUri() {
+        return ContentUris.withAppendedId(video
+                ? MediaStore.Video.Media.EXTERNAL_CONTENT_URI
+                : MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
+    }
+
+    public boolean isVideo() {
+        return video;
+    }
+
+    public long getDateModified() {
+        return dateModified;
+    }
+
+    public int getSizeTier() {
+        return sizeTier;
+    }
+
+    /** True if this model already describes the given row at {@code sizePx}, so it can be reused. */
+    public boolean matches(long id, boolean video, long dateModified, int sizePx) {
+        return this.id == id && this.video == video && this.dateModified == dateModified
+                && sizeTier == tierFor(sizePx);
+    }
+
+    public String getCacheKey() {
+        return sizeTier + "/" + id + "_" + dateModified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MediaThumbnail)) return false;
+        MediaThumbnail other = (MediaThumbnail) o;
+        return id == other.id && dateModified == other.dateModified
+                && sizeTier == other.sizeTier && video == other.video;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(id);
+        result = 31 * result + Long.hashCode(dateModified);
+        result = 31 * result + sizeTier;
+        return result;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "MediaThumbnail{" + getCacheKey() + "}";
+    }
+}
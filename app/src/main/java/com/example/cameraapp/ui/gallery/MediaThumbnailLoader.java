@@ -0,0 +1,119 @@
+package com.example.cameraapp.ui.gallery;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class MediaThumbnailLoader implements ModelLoader<MediaThumbnail, InputStream> {
+
+    private final ThumbnailProvider provider;
+
+    MediaThumbnailLoader(ThumbnailProvider provider) {
+        this.provider = provider;
+    }
+
+    @Override
+    public LoadData<InputStream> buildLoadData(@NonNull MediaThumbnail model, int width, int height,
+                                               @NonNull Options options) {
+        return new LoadData<>(new ObjectKey(model), new Fetcher(provider, model));
+    }
+
+    @Override
+    public boolean handles(@NonNull MediaThumbnail model) {
+        return true;
+    }
+
+    private static class Fetcher implements DataFetcher<InputStream> {
+
+        private final ThumbnailProvider provider;
+        private final MediaThumbnail model;
+        private final CancellationSignal signal = new CancellationSignal();
+        private DataSource dataSource = DataSource.LOCAL;
+        private InputStream stream;
+
+        Fetcher(ThumbnailProvider provider, MediaThumbnail model) {
+            this.provider = provider;
+            this.model = model;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback) {
+            if (provider.getCachedFile(model) != null) {
+                dataSource = DataSource.DATA_DISK_CACHE;
+            }
+            File file = provider.getThumbnailFile(model, signal);
+            if (file == null) {
+                callback.onLoadFailed(new IOException("No thumbnail for " + model));
+                return;
+            }
+            try {
+                stream = new FileInputStream(file);
+                callback.onDataReady(stream);
+            } catch (FileNotFoundException e) {
+                callback.onLoadFailed(e);
+            }
+        }
+
+        @Override
+        public void cleanup() {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            signal.cancel();
+        }
+
+        @NonNull
+        @Override
+        public Class<InputStream> getDataClass() {
+            return InputStream.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return dataSource;
+        }
+    }
+
+    public static class Factory implements ModelLoaderFactory<MediaThumbnail, InputStream> {
+
+        private final Context context;
+
+        public Factory(Context context) {
+            this.context = context.getApplicationContext();
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<MediaThumbnail, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new MediaThumbnailLoader(ThumbnailProvider.getInstance(context));
+        }
+
+        @Override
+        public void teardown() {
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.cameraapp.ui.gallery;
+
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+
+/**
+ * Warms grid thumbnails ahead of the scroll direction. The look-ahead grows
+ * with scroll speed and is capped so the prefetched bitmaps never take more
+ * than half of Glide's memory cache.
+ */
+public class ThumbnailPreloader extends RecyclerView.OnScrollListener {
+
+    private static final String TAG = "ThumbnailPreloader";
+    private static final int MIN_ROWS = 2;
+    private static final int MAX_ROWS = 12;
+    private static final float LOOKAHEAD_SECONDS = 0.5f;
+    private static final float VELOCITY_SMOOTHING = 0.3f;
+
+    private final GalleryAdapter adapter;
+    private final GridLayoutManager layoutManager;
+    private final RequestManager requestManager;
+    private final long memoryBudgetBytes;
+
+    private final SparseArray<Target<Drawable>> inFlight = new SparseArray<>();
+    private final SparseBooleanArray ready = new SparseBooleanArray();
+
+    private long lastScrollTime = 0;
+    private float velocity = 0f;
+    private int hits = 0;
+    private int misses = 0;
+    private int started = 0;
+    private int cancelled = 0;
+
+    public ThumbnailPreloader(RecyclerView recyclerView, GridLayoutManager layoutManager,
+                              GalleryAdapter adapter) {
+        this.adapter = adapter;
+        this.layoutManager = layoutManager;
+        this.requestManager = Glide.with(recyclerView);
+        this.memoryBudgetBytes = Glide.get(recyclerView.getContext()).getMemoryCache().getMaxSize() / 2;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        long now = SystemClock.uptimeMillis();
+        long elapsed = Math.max(1, now - lastScrollTime);
+        lastScrollTime = now;
+        if (dy == 0) return;
+
+        float instant = dy * 1000f / elapsed;
+        velocity += (instant - velocity) * VELOCITY_SMOOTHING;
+        updateWindow(dy > 0);
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            velocity = 0f;
+            Log.d(TAG, getStats());
+        }
+    }
+
+    public void onBind(int position) {
+        if (ready.get(position)) {
+            hits++;
+        } else {
+            misses++;
+        }
+        ready.delete(position);
+        inFlight.remove(position);
+    }
+
+    public void reset() {
+        for (int i = 0; i < inFlight.size(); i++) {
+            requestManager.clear(inFlight.valueAt(i));
+        }
+        cancelled += inFlight.size();
+        inFlight.clear();
+        ready.clear();
+    }
+
+    public int getHitCount() {
+        return hits;
+    }
+
+    public int getMissCount() {
+        return misses;
+    }
+
+    public float getHitRate() {
+        int total = hits + misses;
+        return total == 0 ? 0f : (float) hits / total;
+    }
+
+    public String getStats() {
+        return "hits=" + hits + ", misses=" + misses + ", hitRate=" + getHitRate() +
+               ", started=" + started + ", cancelled=" + cancelled + ", inFlight=" + inFlight.size();
+    }
+
+    private void updateWindow(boolean scrollingDown) {
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) return;
+
+        int count = Math.min(depthRows() * layoutManager.getSpanCount(), budgetItems());
+        int from = scrollingDown ? last + 1 : Math.max(0, first - count);
+        int to = scrollingDown ? Math.min(adapter.getItemCount() - 1, last + count) : first - 1;
+
+        for (int i = inFlight.size() - 1; i >= 0; i--) {
+            int position = inFlight.keyAt(i);
+            if (position < from || position > to) {
+                requestManager.clear(inFlight.valueAt(i));
+                inFlight.removeAt(i);
+                cancelled++;
+            }
+        }
+
+        for (int position = from; position <= to; position++) {
+            if (inFlight.get(position) != null || ready.get(position)) continue;
+            Target<Drawable> target = preload(position);
+            started++;
+            if (!ready.get(position)) {
+                inFlight.put(position, target);
+            }
+        }
+    }
+
+    private Target<Drawable> preload(int position) {
+        int size = adapter.getThumbnailSize();
+        return adapter.thumbnailRequest(requestManager, position)
+                .listener(new RequestListener<Drawable>() {
+                    @Override
+                    public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                                @NonNull Target<Drawable> target, boolean isFirstResource) {
+                        inFlight.remove(position);
+                        return false;
+                    }
+
+                    @Override
+                    public boolean onResourceReady(@NonNull Drawable resource, @NonNull Object model,
+                                                   Target<Drawable> target, @NonNull DataSource dataSource,
+                                                   boolean isFirstResource) {
+                        inFlight.remove(position);
+                        ready.put(position, true);
+                        return false;
+                    }
+                })
+                .preload(size, size);
+    }
+
+    private int depthRows() {
+        int rowHeight = Math.max(1, adapter.getThumbnailSize());
+        float rowsPerSecond = Math.abs(velocity) / rowHeight;
+        int rows = MIN_ROWS + Math.round(rowsPerSecond * LOOKAHEAD_SECONDS);
+        return Math.min(rows, MAX_ROWS);
+    }
+
+    private int budgetItems() {
+        long size = adapter.getThumbnailSize();
+        long bytesPerThumbnail = Math.max(1, size * size * 4);
+        return (int) Math.max(1, memoryBudgetBytes / bytesPerThumbnail);
+    }
+}
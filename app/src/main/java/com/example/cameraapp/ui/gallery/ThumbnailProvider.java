@@ -0,0 +1,322 @@
+package com.example.cameraapp.ui.gallery;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.util.Log;
+import android.util.Size;
+
+import androidx.annotation.Nullable;
+
+import com.example.cameraapp.IoScheduler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Produces small, pre-sized thumbnails for gallery cells and keeps them on disk
+ * under {@code cache/thumbnails/<tier>/<id>_<dateModified>.jpg}, so a cell
+ * never decodes the full photo or seeks into a video once its tier is warm.
+ * Video posters are a single keyframe near the start of the clip, extracted
+ * already scaled to the requested tier.
+ */
+public class ThumbnailProvider {
+
+    private static final String TAG = "ThumbnailProvider";
+    private static final String CACHE_DIR = "thumbnails";
+    private static final long MAX_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final int JPEG_QUALITY = 85;
+    private static final int TRIM_EVERY_WRITES = 50;
+    private static final int POSTER_BATCH_SIZE = 8;
+    private static final long POSTER_MAX_TIME_US = 3_000_000;
+    private static final int POSTER_TIME_DIVISOR = 10;
+    private static final int MAX_PENDING_POSTERS = 256;
+
+    private static ThumbnailProvider instance;
+
+    private final Context context;
+    private final ContentResolver resolver;
+    private final File cacheDir;
+    private int writesSinceTrim = 0;
+
+    private final Object posterLock = new Object();
+    private final ArrayDeque<MediaThumbnail> pendingPosters = new ArrayDeque<>();
+    private IoScheduler.Token posterToken;
+    private boolean posterChainRunning = false;
+
+    private ThumbnailProvider(Context context) {
+        this.context = context;
+        this.resolver = context.getContentResolver();
+        this.cacheDir = new File(context.getCacheDir(), CACHE_DIR);
+    }
+
+    public static synchronized ThumbnailProvider getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailProvider(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Nullable
+    public File getCachedFile(MediaThumbnail thumbnail) {
+        File file = fileFor(thumbnail);
+        return file.exists() ? file : null;
+    }
+
+    /**
+     * Returns the cached thumbnail file, generating it first if needed.
+     * Blocks, so only call it from a background thread.
+     */
+    @Nullable
+    public File getThumbnailFile(MediaThumbnail thumbnail, @Nullable CancellationSignal signal) {
+        File file = fileFor(thumbnail);
+        if (file.exists()) {
+            file.setLastModified(System.currentTimeMillis());
+            return file;
+        }
+
+        Bitmap bitmap = generate(thumbnail, signal);
+        if (bitmap == null) return null;
+
+        try {
+            write(bitmap, file);
+        } finally {
+            bitmap.recycle();
+        }
+        return file.exists() ? file : null;
+    }
+
+    /**
+     * Queues grid-sized posters for the videos in rows {@code [start, end)} of
+     * {@code items}. One batch chain drains the queue a few clips at a time on
+     * the low-priority poster lane; a new token (a new gallery view) replaces
+     * whatever the previous one left queued. Screen-sized posters are left to
+     * the viewer, so prefetch never crowds grid thumbnails out of the cache.
+     */
+    public void prefetchPosters(MediaTable items, int start, int end, int gridSizePx,
+                                @Nullable IoScheduler.Token token) {
+        synchronized (posterLock) {
+            if (token != posterToken) {
+                pendingPosters.clear();
+                posterToken = token;
+            }
+            for (int i = start; i < end && pendingPosters.size() < MAX_PENDING_POSTERS; i++) {
+                if (!items.isVideo(i)) continue;
+                MediaThumbnail grid = new MediaThumbnail(items.getId(i), true,
+                        items.getDateModified(i), gridSizePx);
+                if (!pendingPosters.contains(grid)) {
+                    pendingPosters.add(grid);
+                }
+            }
+            if (!posterChainRunning && !pendingPosters.isEmpty()) {
+                posterChainRunning = schedulePosterBatch();
+            }
+        }
+    }
+
+    private boolean schedulePosterBatch() {
+        return IoScheduler.getInstance().execute(IoScheduler.Lane.POSTER, null, this::runPosterBatch);
+    }
+
+    private void runPosterBatch() {
+        for (int n = 0; n < POSTER_BATCH_SIZE; n++) {
+            MediaThumbnail thumbnail;
+            synchronized (posterLock) {
+                if (posterToken != null && posterToken.isCancelled()) {
+                    pendingPosters.clear();
+                }
+                thumbnail = pendingPosters.poll();
+            }
+            if (thumbnail == null) break;
+            if (!fileFor(thumbnail).exists()) {
+                writePoster(thumbnail);
+            }
+        }
+        synchronized (posterLock) {
+            posterChainRunning = !pendingPosters.isEmpty() && schedulePosterBatch();
+            if (!posterChainRunning) {
+                pendingPosters.clear();
+            }
+        }
+    }
+
+    @Nullable
+    private Bitmap generate(MediaThumbnail thumbnail, @Nullable CancellationSignal signal) {
+        int size = thumbnail.getSizeTier();
+        try {
+            if (thumbnail.isVideo()) {
+                return extractPoster(thumbnail.getUri(), size, signal);
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                return resolver.loadThumbnail(thumbnail.getUri(), new Size(size, size), signal);
+            }
+            return decodeSampled(thumbnail, size);
+        } catch (Exception e) {
+            Log.w(TAG, "Could not build thumbnail for " + thumbnail, e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private Bitmap decodeSampled(MediaThumbnail thumbnail, int size) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = resolver.openInputStream(thumbnail.getUri())) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        int sample = 1;
+        while (Math.min(options.outWidth, options.outHeight) / (sample * 2) >= size) {
+            sample *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sample;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        try (InputStream in = resolver.openInputStream(thumbnail.getUri())) {
+            return BitmapFactory.decodeStream(in, null, options);
+        }
+    }
+
+    /** Writes the prefetched poster for {@code thumbnail} to its tier's cache file. */
+    private void writePoster(MediaThumbnail thumbnail) {
+        Bitmap frame = null;
+        try {
+            frame = extractPoster(thumbnail.getUri(), thumbnail.getSizeTier(), null);
+            if (frame != null) {
+                write(frame, fileFor(thumbnail));
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not build poster for " + thumbnail, e);
+        } finally {
+            if (frame != null) {
+                frame.recycle();
+            }
+        }
+    }
+
+    /**
+     * Grabs the sync frame nearest a tenth of the way into the clip (at most
+     * three seconds in), so the decoder never runs past one GOP, and has the
+     * retriever scale it on the way out where the platform allows.
+     */
+    @Nullable
+    private Bitmap extractPoster(Uri uri, int size, @Nullable CancellationSignal signal)
+            throws IOException {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, uri);
+            if (signal != null && signal.isCanceled()) return null;
+
+            long durationMs = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+            long timeUs = Math.min(durationMs * 1000 / POSTER_TIME_DIVISOR, POSTER_MAX_TIME_US);
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                long width = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+                long height = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+                if (width > 0 && height > 0) {
+                    int box = (int) Math.min(Integer.MAX_VALUE,
+                            size * Math.max(width, height) / Math.min(width, height));
+                    return retriever.getScaledFrameAtTime(timeUs,
+                            MediaMetadataRetriever.OPTION_CLOSEST_SYNC, box, box);
+                }
+            }
+            Bitmap frame = retriever.getFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            return frame != null ? scaleToTier(frame, size) : null;
+        } finally {
+            retriever.release();
+        }
+    }
+
+    private static long parseLong(@Nullable String value) {
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Bitmap scaleToTier(Bitmap source, int size) {
+        int shortSide = Math.min(source.getWidth(), source.getHeight());
+        if (shortSide <= size) return source;
+        float scale = (float) size / shortSide;
+        Bitmap scaled = Bitmap.createScaledBitmap(source,
+                Math.round(source.getWidth() * scale), Math.round(source.getHeight() * scale), true);
+        if (scaled != source) {
+            source.recycle();
+        }
+        return scaled;
+    }
+
+    private void write(Bitmap bitmap, File file) {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Could not create " + dir);
+            return;
+        }
+
+        File temp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write " + file, e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+
+        synchronized (this) {
+            if (++writesSinceTrim < TRIM_EVERY_WRITES) return;
+            writesSinceTrim = 0;
+        }
+        trim();
+    }
+
+    private void trim() {
+        List<File> files = new ArrayList<>();
+        File[] tiers = cacheDir.listFiles();
+        if (tiers == null) return;
+        for (File tier : tiers) {
+            File[] entries = tier.listFiles();
+            if (entries != null) {
+                files.addAll(Arrays.asList(entries));
+            }
+        }
+
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= MAX_CACHE_BYTES) return;
+
+        files.sort(Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (total <= MAX_CACHE_BYTES * 3 / 4) break;
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private File fileFor(MediaThumbnail thumbnail) {
+        return new File(cacheDir, thumbnail.getCacheKey() + ".jpg");
+    }
+}
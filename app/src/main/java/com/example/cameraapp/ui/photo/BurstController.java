@@ -0,0 +1,149 @@
+package com.example.cameraapp.ui.photo;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageCapture;
+import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * Fires in-memory captures back to back while the shutter is held. There is
+ * no frame ring: exactly one takePicture() request is outstanding at a time,
+ * and the next one is issued when the previous frame arrives. Frames go to the
+ * shared {@link PhotoWriter}, whose bounded in-flight set on the capture lane
+ * is the only buffering. When the writer is full the next request waits for a
+ * slot, and a frame that still arrives to a full writer is dropped. A failed
+ * capture ends the burst through {@link Callback#onBurstFailed()}. All calls
+ * are on the main thread.
+ */
+class BurstController {
+
+    private static final String TAG = "BurstController";
+
+    interface Callback {
+        void onBurstProgress(int frames, float fps, int queueDepth);
+
+        /** The burst stopped on a capture error; the owner ends it as if released. */
+        void onBurstFailed();
+    }
+
+    private final PhotoWriter writer;
+    private final Executor executor;
+    private final Callback callback;
+
+    private ImageCapture imageCapture;
+    private CaptureProfile profile;
+    private boolean active = false;
+    private boolean captureOutstanding = false;
+    private boolean throttled = false;
+
+    private long startedAt = 0;
+    private long stoppedAt = 0;
+    private int requested = 0;
+    private int accepted = 0;
+    private int dropped = 0;
+    private int throttles = 0;
+    private int maxQueueDepth = 0;
+
+    BurstController(PhotoWriter writer, Executor executor, Callback callback) {
+        this.writer = writer;
+        this.executor = executor;
+        this.callback = callback;
+    }
+
+    void start(ImageCapture imageCapture, CaptureProfile profile) {
+        if (active) return;
+        this.imageCapture = imageCapture;
+        this.profile = profile;
+        active = true;
+        throttled = false;
+        startedAt = SystemClock.elapsedRealtime();
+        stoppedAt = 0;
+        requested = 0;
+        accepted = 0;
+        dropped = 0;
+        throttles = 0;
+        maxQueueDepth = 0;
+        takeNext();
+    }
+
+    void stop() {
+        if (!active) return;
+        active = false;
+        stoppedAt = SystemClock.elapsedRealtime();
+        imageCapture = null;
+        Log.d(TAG, "Burst finished: " + getStats());
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    /** Resumes a burst that was waiting for the writer to free a slot. */
+    void onCapacityAvailable() {
+        if (active && throttled) {
+            throttled = false;
+            takeNext();
+        }
+    }
+
+    int getAcceptedFrames() {
+        return accepted;
+    }
+
+    float getFramesPerSecond() {
+        long end = stoppedAt > 0 ? stoppedAt : SystemClock.elapsedRealtime();
+        long elapsedMs = end - startedAt;
+        return elapsedMs <= 0 ? 0f : accepted * 1000f / elapsedMs;
+    }
+
+    String getStats() {
+        return "requested=" + requested + ", accepted=" + accepted + ", dropped=" + dropped +
+               ", throttles=" + throttles + ", fps=" + String.format(Locale.US, "%.1f", getFramesPerSecond()) +
+               ", maxQueueDepth=" + maxQueueDepth;
+    }
+
+    private void takeNext() {
+        if (!active || captureOutstanding) return;
+        if (!writer.canAccept()) {
+            throttled = true;
+            throttles++;
+            return;
+        }
+
+        captureOutstanding = true;
+        requested++;
+        CaptureShot shot = new CaptureShot(profile, SystemClock.elapsedRealtime(), true);
+        imageCapture.takePicture(executor, new ImageCapture.OnImageCapturedCallback() {
+            @Override
+            public void onCaptureSuccess(@NonNull ImageProxy image) {
+                captureOutstanding = false;
+                shot.capturedAt = SystemClock.elapsedRealtime();
+                if (writer.canAccept()) {
+                    writer.submit(shot, image);
+                    accepted++;
+                } else {
+                    image.close();
+                    dropped++;
+                }
+                int depth = writer.getInFlight();
+                maxQueueDepth = Math.max(maxQueueDepth, depth);
+                callback.onBurstProgress(accepted, getFramesPerSecond(), depth);
+                takeNext();
+            }
+
+            @Override
+            public void onError(@NonNull ImageCaptureException exception) {
+                captureOutstanding = false;
+                Log.w(TAG, "Burst capture failed", exception);
+                callback.onBurstFailed();
+                stop();
+            }
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.cameraapp.ui.photo;
+
+import androidx.annotation.OptIn;
+import androidx.annotation.StringRes;
+import androidx.camera.core.CameraInfo;
+import androidx.camera.core.ExperimentalZeroShutterLag;
+import androidx.camera.core.ImageCapture;
+
+import com.example.cameraapp.R;
+
+/**
+ * The ImageCapture mode the shutter uses. Zero-shutter-lag takes the frame from
+ * a ring buffer the camera fills ahead of the tap, so it is only offered where
+ * the camera reports support; CameraX itself falls back to a normal capture
+ * while the flash is on. The opt-in covers both the ZSL capture mode constant
+ * and the support check.
+ */
+@OptIn(markerClass = ExperimentalZeroShutterLag.class)
+public enum CaptureProfile {
+    QUALITY(ImageCapture.CAPTURE_MODE_MAXIMIZE_QUALITY,
+            R.string.capture_profile_quality_short, R.string.capture_profile_quality),
+    LATENCY(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY,
+            R.string.capture_profile_latency_short, R.string.capture_profile_latency),
+    ZERO_SHUTTER_LAG(ImageCapture.CAPTURE_MODE_ZERO_SHUTTER_LAG,
+            R.string.capture_profile_zsl_short, R.string.capture_profile_zsl);
+
+    private final int captureMode;
+    @StringRes private final int shortLabel;
+    @StringRes private final int label;
+
+    CaptureProfile(int captureMode, @StringRes int shortLabel, @StringRes int label) {
+        this.captureMode = captureMode;
+        this.shortLabel = shortLabel;
+        this.label = label;
+    }
+
+    public int getCaptureMode() {
+        return captureMode;
+    }
+
+    @StringRes
+    public int getShortLabel() {
+        return shortLabel;
+    }
+
+    @StringRes
+    public int getLabel() {
+        return label;
+    }
+
+    public boolean isSupported(CameraInfo cameraInfo) {
+        return this != ZERO_SHUTTER_LAG || cameraInfo.isZslSupported();
+    }
+
+    /** The next profile after this one that {@code cameraInfo} supports. */
+    public CaptureProfile next(CameraInfo cameraInfo) {
+        CaptureProfile[] profiles = values();
+        for (int i = 1; i <= profiles.length; i++) {
+            CaptureProfile candidate = profiles[(ordinal() + i) % profiles.length];
+            if (candidate.isSupported(cameraInfo)) return candidate;
+        }
+        return QUALITY;
+    }
+
+    public static CaptureProfile fromName(String name) {
+        for (CaptureProfile profile : values()) {
+            if (profile.name().equals(name)) return profile;
+        }
+        return QUALITY;
+    }
+}
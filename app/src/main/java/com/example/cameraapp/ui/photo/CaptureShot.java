@@ -0,0 +1,20 @@
+package com.example.cameraapp.ui.photo;
+
+import com.example.cameraapp.CaptureMetrics;
+
+/** Timing marks for one shutter press as it moves from tap to MediaStore. */
+final class CaptureShot {
+
+    final CaptureProfile profile;
+    final long requestedAt;
+    final boolean burst;
+    final int cookie = CaptureMetrics.getInstance().newCookie();
+    volatile long exposedAt = 0;
+    volatile long capturedAt = 0;
+
+    CaptureShot(CaptureProfile profile, long requestedAt, boolean burst) {
+        this.profile = profile;
+        this.requestedAt = requestedAt;
+        this.burst = burst;
+    }
+}
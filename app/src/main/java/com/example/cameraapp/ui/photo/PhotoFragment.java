@@ -1,11 +1,17 @@
 package com.example.cameraapp.ui.photo;
 
 import android.Manifest;
-import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.graphics.drawable.Drawable;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CaptureRequest;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.provider.MediaStore;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
@@ -17,11 +23,16 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.OptIn;
+import androidx.camera.camera2.interop.Camera2Interop;
+import androidx.camera.camera2.interop.ExperimentalCamera2Interop;
 import androidx.camera.core.Camera;
+import androidx.camera.core.CameraInfo;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.FocusMeteringAction;
 import androidx.camera.core.ImageCapture;
 import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
 import androidx.camera.core.MeteringPoint;
 import androidx.camera.core.MeteringPointFactory;
 import androidx.camera.core.Preview;
@@ -33,27 +44,120 @@ import androidx.core.view.WindowInsetsCompat;
 import androidx.fragment.app.Fragment;
 import androidx.navigation.Navigation;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+import com.example.cameraapp.CameraSessionController;
+import com.example.cameraapp.CaptureMetrics;
 import com.example.cameraapp.R;
 import com.example.cameraapp.databinding.FragmentPhotoBinding;
 import com.google.common.util.concurrent.ListenableFuture;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class PhotoFragment extends Fragment {
 
+    private static final String TAG = "PhotoFragment";
+    private static final String PREFS_NAME = "photo";
+    private static final String KEY_CAPTURE_PROFILE = "capture_profile";
+
     private FragmentPhotoBinding binding;
     private boolean isUsingFrontCamera = false;
     private int flashMode = ImageCapture.FLASH_MODE_OFF;
 
-    private ProcessCameraProvider cameraProvider;
+    private CameraSessionController cameraSession;
     private Camera camera;
     private ImageCapture imageCapture;
+    private CaptureProfile imageCaptureProfile;
     private Preview preview;
+
+    private CaptureProfile captureProfile = CaptureProfile.QUALITY;
+    private CaptureProfile activeProfile = CaptureProfile.QUALITY;
+    private PhotoWriter photoWriter;
+    private final CaptureMetrics metrics = CaptureMetrics.getInstance();
+    private BurstController burstController;
+    private final AtomicReference<CaptureShot> capturingShot = new AtomicReference<>();
+
+    private final CameraCaptureSession.CaptureCallback stillCaptureCallback =
+            new CameraCaptureSession.CaptureCallback() {
+                @Override
+                public void onCaptureStarted(@NonNull CameraCaptureSession session,
+                                             @NonNull CaptureRequest request,
+                                             long timestamp, long frameNumber) {
+                    Integer intent = request.get(CaptureRequest.CONTROL_CAPTURE_INTENT);
+                    CaptureShot shot = capturingShot.get();
+                    if (intent == null || shot == null || shot.exposedAt != 0) return;
+                    if (intent == CaptureRequest.CONTROL_CAPTURE_INTENT_STILL_CAPTURE
+                            || intent == CaptureRequest.CONTROL_CAPTURE_INTENT_ZERO_SHUTTER_LAG) {
+                        shot.exposedAt = SystemClock.elapsedRealtime();
+                    }
+                }
+            };
+
+    private final PhotoWriter.Listener photoWriterListener = new PhotoWriter.Listener() {
+        @Override
+        public void onPhotoSaved(CaptureShot shot, Uri uri) {
+            if (!shot.burst) {
+                recordShutterLag(shot);
+            }
+            Log.d(TAG, "Photo saved to: " + uri);
+            if (!isAdded() || binding == null) {
+                abandonThumbnailPhases(shot);
+                return;
+            }
+
+            RequestListener<Drawable> thumbnailListener = null;
+            if (!shot.burst) {
+                Toast.makeText(requireContext(), R.string.photo_saved, Toast.LENGTH_SHORT).show();
+                metrics.begin(CaptureMetrics.Phase.SAVED_TO_THUMBNAIL, shot.cookie);
+                thumbnailListener = new RequestListener<Drawable>() {
+                    @Override
+                    public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                                @NonNull Target<Drawable> target, boolean isFirstResource) {
+                        abandonThumbnailPhases(shot);
+                        return false;
+                    }
+
+                    @Override
+                    public boolean onResourceReady(@NonNull Drawable resource, @NonNull Object model,
+                                                   Target<Drawable> target, @NonNull DataSource dataSource,
+                                                   boolean isFirstResource) {
+                        metrics.end(CaptureMetrics.Phase.SAVED_TO_THUMBNAIL, shot.cookie);
+                        metrics.end(CaptureMetrics.Phase.TAP_TO_THUMBNAIL, shot.cookie);
+                        return false;
+                    }
+                };
+            }
+            Glide.with(PhotoFragment.this)
+                    .load(uri)
+                    .centerCrop()
+                    .listener(thumbnailListener)
+                    .into(binding.imgLastPhoto);
+        }
+
+        @Override
+        public void onPhotoFailed(CaptureShot shot) {
+            abandonThumbnailPhases(shot);
+            if (!isAdded() || binding == null || shot.burst) return;
+            Toast.makeText(requireContext(), R.string.error_save_file, Toast.LENGTH_SHORT).show();
+        }
+
+        @Override
+        public void onCapacityChanged(boolean canAccept) {
+            if (binding != null) {
+                updateShutterEnabled();
+            }
+            if (canAccept && burstController != null) {
+                burstController.onCapacityAvailable();
+            }
+        }
+    };
     
     private ScaleGestureDetector scaleGestureDetector;
     private float currentZoomRatio = 1f;
@@ -72,6 +176,28 @@ public class PhotoFragment extends Fragment {
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
+        captureProfile = CaptureProfile.fromName(getPreferences()
+                .getString(KEY_CAPTURE_PROFILE, CaptureProfile.QUALITY.name()));
+        activeProfile = captureProfile;
+        binding.btnCaptureProfile.setText(activeProfile.getShortLabel());
+        photoWriter = PhotoWriter.getInstance(requireContext());
+        photoWriter.setListener(photoWriterListener);
+        burstController = new BurstController(photoWriter,
+                ContextCompat.getMainExecutor(requireContext()), new BurstController.Callback() {
+                    @Override
+                    public void onBurstProgress(int frames, float fps, int queueDepth) {
+                        showBurstProgress(frames, fps, queueDepth);
+                    }
+
+                    @Override
+                    public void onBurstFailed() {
+                        stopBurst();
+                    }
+                });
+        cameraSession = new CameraSessionController(getViewLifecycleOwner());
+        cameraSession.observePreview(binding.previewView);
+        preview = new Preview.Builder().build();
+        preview.setSurfaceProvider(binding.previewView.getSurfaceProvider());
         setupEdgeToEdge();
         setupControls();
         setupZoomGesture();
@@ -79,7 +205,12 @@ public class PhotoFragment extends Fragment {
     }
 
     private void setupEdgeToEdge() {
-        ViewCompat.setOnApplyWindowInsetsListener(binding.btnFlash, (v, windowInsets) -> {
+        applyStatusBarMargin(binding.btnFlash);
+        applyStatusBarMargin(binding.btnCaptureProfile);
+    }
+
+    private void applyStatusBarMargin(View view) {
+        ViewCompat.setOnApplyWindowInsetsListener(view, (v, windowInsets) -> {
             Insets insets = windowInsets.getInsets(WindowInsetsCompat.Type.statusBars());
             ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) v.getLayoutParams();
             params.topMargin = insets.top + getResources().getDimensionPixelSize(R.dimen.spacing_sm);
@@ -90,8 +221,17 @@ public class PhotoFragment extends Fragment {
 
     private void setupControls() {
         binding.btnCapture.setOnClickListener(v -> capturePhoto());
+        binding.btnCapture.setOnLongClickListener(v -> startBurst());
+        binding.btnCapture.setOnTouchListener((v, event) -> {
+            int action = event.getActionMasked();
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                stopBurst();
+            }
+            return false;
+        });
         binding.btnSwitchCamera.setOnClickListener(v -> switchCamera());
         binding.btnFlash.setOnClickListener(v -> toggleFlash());
+        binding.btnCaptureProfile.setOnClickListener(v -> cycleCaptureProfile());
         binding.lastPhotoCard.setOnClickListener(v -> navigateToGallery());
         binding.btnGrantPermission.setOnClickListener(v -> requestPermissions());
     }
@@ -221,7 +361,7 @@ public class PhotoFragment extends Fragment {
         
         cameraProviderFuture.addListener(() -> {
             try {
-                cameraProvider = cameraProviderFuture.get();
+                cameraSession.setCameraProvider(cameraProviderFuture.get());
                 bindCameraUseCases();
             } catch (ExecutionException | InterruptedException e) {
                 Toast.makeText(requireContext(), R.string.error_camera_init, Toast.LENGTH_SHORT).show();
@@ -229,100 +369,149 @@ public class PhotoFragment extends Fragment {
         }, ContextCompat.getMainExecutor(requireContext()));
     }
     
+    @OptIn(markerClass = ExperimentalCamera2Interop.class)
     private void bindCameraUseCases() {
+        ProcessCameraProvider cameraProvider = cameraSession.getCameraProvider();
         if (cameraProvider == null || !isAdded()) return;
-        
-        cameraProvider.unbindAll();
-        
-        CameraSelector cameraSelector = new CameraSelector.Builder()
-                .requireLensFacing(isUsingFrontCamera ? 
-                        CameraSelector.LENS_FACING_FRONT : CameraSelector.LENS_FACING_BACK)
-                .build();
-        
-        preview = new Preview.Builder().build();
-        preview.setSurfaceProvider(binding.previewView.getSurfaceProvider());
-        
-        imageCapture = new ImageCapture.Builder()
-                .setCaptureMode(ImageCapture.CAPTURE_MODE_MAXIMIZE_QUALITY)
-                .setFlashMode(flashMode)
-                .build();
+
+        int lensFacing = isUsingFrontCamera
+                ? CameraSelector.LENS_FACING_FRONT : CameraSelector.LENS_FACING_BACK;
+        CameraSelector cameraSelector = CameraSessionController.selectorFor(lensFacing);
+
+        activeProfile = captureProfile;
+        List<CameraInfo> cameraInfos = cameraSelector.filter(cameraProvider.getAvailableCameraInfos());
+        if (!cameraInfos.isEmpty() && !activeProfile.isSupported(cameraInfos.get(0))) {
+            activeProfile = CaptureProfile.QUALITY;
+        }
+        binding.btnCaptureProfile.setText(activeProfile.getShortLabel());
+
+        // Capture mode is fixed at build time, so only a profile change costs a new ImageCapture.
+        if (imageCapture == null || imageCaptureProfile != activeProfile) {
+            ImageCapture.Builder captureBuilder = new ImageCapture.Builder()
+                    .setCaptureMode(activeProfile.getCaptureMode())
+                    .setFlashMode(flashMode);
+            new Camera2Interop.Extender<>(captureBuilder).setSessionCaptureCallback(stillCaptureCallback);
+            imageCapture = captureBuilder.build();
+            imageCaptureProfile = activeProfile;
+            cameraSession.setUseCases(preview, imageCapture);
+        }
         
         try {
-            camera = cameraProvider.bindToLifecycle(
-                    getViewLifecycleOwner(),
-                    cameraSelector,
-                    preview,
-                    imageCapture
-            );
-            
-            currentZoomRatio = 1f;
-            setupTapToFocus();
-            
+            if (cameraSession.bind(lensFacing)) {
+                camera = cameraSession.getCamera();
+                currentZoomRatio = 1f;
+                setupTapToFocus();
+            }
         } catch (Exception e) {
+            camera = null;
             Toast.makeText(requireContext(), R.string.error_camera_init, Toast.LENGTH_SHORT).show();
         }
     }
 
     private void capturePhoto() {
-        if (imageCapture == null) return;
-        
-        binding.btnCapture.setEnabled(false);
-        
-        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault())
-                .format(System.currentTimeMillis());
-        String fileName = "IMG_" + timestamp + ".jpg";
-        
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
-        contentValues.put(MediaStore.MediaColumns.MIME_TYPE, "image/jpeg");
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            contentValues.put(MediaStore.MediaColumns.RELATIVE_PATH, "Pictures/CameraApp");
-        }
-        
-        ImageCapture.OutputFileOptions outputOptions = new ImageCapture.OutputFileOptions.Builder(
-                requireContext().getContentResolver(),
-                MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                contentValues
-        ).build();
-        
+        if (imageCapture == null || capturingShot.get() != null || !photoWriter.canAccept()) return;
+
+        CaptureShot shot = new CaptureShot(activeProfile, SystemClock.elapsedRealtime(), false);
+        metrics.begin(CaptureMetrics.Phase.TAP_TO_CAPTURE, shot.cookie);
+        metrics.begin(CaptureMetrics.Phase.TAP_TO_THUMBNAIL, shot.cookie);
+        capturingShot.set(shot);
+        updateShutterEnabled();
         animateFlash();
-        
+
         imageCapture.takePicture(
-                outputOptions,
                 ContextCompat.getMainExecutor(requireContext()),
-                new ImageCapture.OnImageSavedCallback() {
+                new ImageCapture.OnImageCapturedCallback() {
                     @Override
-                    public void onImageSaved(@NonNull ImageCapture.OutputFileResults results) {
-                        if (!isAdded()) return;
-                        binding.btnCapture.setEnabled(true);
-                        
-                        android.net.Uri savedUri = results.getSavedUri();
-                        android.util.Log.d("PhotoFragment", "Photo saved to: " + savedUri);
-                        
-                        if (savedUri != null) {
-                            Toast.makeText(requireContext(), 
-                                "Фото сохранено: " + savedUri, Toast.LENGTH_LONG).show();
-                            
-                            com.bumptech.glide.Glide.with(requireContext())
-                                    .load(savedUri)
-                                    .centerCrop()
-                                    .into(binding.imgLastPhoto);
-                        } else {
-                            Toast.makeText(requireContext(), 
-                                "Фото сохранено (URI = null)", Toast.LENGTH_SHORT).show();
+                    public void onCaptureSuccess(@NonNull ImageProxy image) {
+                        shot.capturedAt = SystemClock.elapsedRealtime();
+                        metrics.end(CaptureMetrics.Phase.TAP_TO_CAPTURE, shot.cookie);
+                        capturingShot.compareAndSet(shot, null);
+                        photoWriter.submit(shot, image);
+                        if (binding != null) {
+                            updateShutterEnabled();
                         }
                     }
 
                     @Override
                     public void onError(@NonNull ImageCaptureException exception) {
-                        if (!isAdded()) return;
-                        binding.btnCapture.setEnabled(true);
+                        Log.w(TAG, "Capture failed", exception);
+                        metrics.abandon(CaptureMetrics.Phase.TAP_TO_CAPTURE, shot.cookie);
+                        abandonThumbnailPhases(shot);
+                        capturingShot.compareAndSet(shot, null);
+                        if (!isAdded() || binding == null) return;
+                        updateShutterEnabled();
                         Toast.makeText(requireContext(), R.string.error_save_file, Toast.LENGTH_SHORT).show();
                     }
                 }
         );
     }
 
+    private void abandonThumbnailPhases(CaptureShot shot) {
+        metrics.abandon(CaptureMetrics.Phase.SAVED_TO_THUMBNAIL, shot.cookie);
+        metrics.abandon(CaptureMetrics.Phase.TAP_TO_THUMBNAIL, shot.cookie);
+    }
+
+    private void updateShutterEnabled() {
+        // A held shutter must stay enabled or the release never reaches the touch listener.
+        boolean bursting = burstController != null && burstController.isActive();
+        binding.btnCapture.setEnabled(bursting || (capturingShot.get() == null && photoWriter.canAccept()));
+    }
+
+    private boolean startBurst() {
+        if (imageCapture == null || capturingShot.get() != null || burstController.isActive()) {
+            return false;
+        }
+        burstController.start(imageCapture, activeProfile);
+        binding.burstCounter.setText(getString(R.string.burst_progress, 0, 0f, 0));
+        binding.burstCounter.setVisibility(View.VISIBLE);
+        return true;
+    }
+
+    private void stopBurst() {
+        if (burstController == null || !burstController.isActive()) return;
+        burstController.stop();
+        Log.d(TAG, "Photo writer after burst: " + photoWriter.getStats());
+        if (binding == null) return;
+        binding.burstCounter.setVisibility(View.GONE);
+        updateShutterEnabled();
+        Toast.makeText(requireContext(),
+                getString(R.string.burst_done, burstController.getAcceptedFrames(),
+                        burstController.getFramesPerSecond()),
+                Toast.LENGTH_SHORT).show();
+    }
+
+    private void showBurstProgress(int frames, float fps, int queueDepth) {
+        if (binding == null) return;
+        binding.burstCounter.setText(getString(R.string.burst_progress, frames, fps, queueDepth));
+    }
+
+    private void recordShutterLag(CaptureShot shot) {
+        long savedAt = SystemClock.elapsedRealtime();
+        // A ZSL frame was exposed before the tap and its reprocess request may
+        // not carry a still-capture intent; with no exposure seen, tap to
+        // exposure is recorded as unobserved rather than as zero.
+        long exposedAt = shot.exposedAt;
+        long tapToExposureMs = exposedAt > 0 ? exposedAt - shot.requestedAt : -1;
+        long exposureToSavedMs = savedAt - (exposedAt > 0 ? exposedAt : shot.requestedAt);
+        ShutterLagStats.getInstance().record(shot.profile, tapToExposureMs, exposureToSavedMs);
+        Log.d(TAG, shot.profile + " shot: tapToExposureMs=" + tapToExposureMs +
+                   ", tapToRearmMs=" + (shot.capturedAt - shot.requestedAt) +
+                   ", exposureToSavedMs=" + exposureToSavedMs);
+    }
+
+    private void cycleCaptureProfile() {
+        if (camera == null) return;
+
+        captureProfile = activeProfile.next(camera.getCameraInfo());
+        getPreferences().edit().putString(KEY_CAPTURE_PROFILE, captureProfile.name()).apply();
+        Toast.makeText(requireContext(), captureProfile.getLabel(), Toast.LENGTH_SHORT).show();
+        bindCameraUseCases();
+    }
+
+    private SharedPreferences getPreferences() {
+        return requireContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
     private void animateFlash() {
         binding.flashOverlay.setAlpha(0f);
         binding.flashOverlay.setVisibility(View.VISIBLE);
@@ -346,6 +535,7 @@ public class PhotoFragment extends Fragment {
                 .setDuration(300)
                 .start();
 
+        cameraSession.markSwitch();
         bindCameraUseCases();
     }
 
@@ -381,7 +571,8 @@ public class PhotoFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        if (hasRequiredPermissions() && cameraProvider != null) {
+        if (hasRequiredPermissions()) {
+            cameraSession.markResume();
             bindCameraUseCases();
         }
     }
@@ -389,17 +580,19 @@ public class PhotoFragment extends Fragment {
     @Override
     public void onPause() {
         super.onPause();
-        if (cameraProvider != null) {
-            cameraProvider.unbindAll();
-        }
+        stopBurst();
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (cameraProvider != null) {
-            cameraProvider.unbindAll();
-        }
+        Log.d(TAG, "Shutter lag: " + ShutterLagStats.getInstance().getStats());
+        Log.d(TAG, "Photo writer: " + photoWriter.getStats());
+        cameraSession.logStats("photo");
+        metrics.dumpAndReset("photo");
+        photoWriter.setListener(null);
+        capturingShot.set(null);
+        cameraSession.unbind();
         binding = null;
     }
 }
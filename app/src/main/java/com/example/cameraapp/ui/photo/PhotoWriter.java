@@ -0,0 +1,232 @@
+package com.example.cameraapp.ui.photo;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageFormat;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.camera.core.ImageProxy;
+
+import com.example.cameraapp.CaptureMetrics;
+import com.example.cameraapp.IoScheduler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persists in-memory captures off the main thread. The shutter hands over the
+ * ImageProxy as soon as the frame arrives; the JPEG is copied out, rotated if
+ * the camera left no EXIF orientation, and inserted into MediaStore on the
+ * capture lane. At most {@link #MAX_IN_FLIGHT} shots are held at once, and
+ * callers check {@link #canAccept()} before taking another picture.
+ */
+public class PhotoWriter {
+
+    private static final String TAG = "PhotoWriter";
+    private static final int MAX_IN_FLIGHT = 4;
+    private static final int JPEG_QUALITY = 95;
+
+    public interface Listener {
+        void onPhotoSaved(CaptureShot shot, Uri uri);
+        void onPhotoFailed(CaptureShot shot);
+        void onCapacityChanged(boolean canAccept);
+    }
+
+    private static PhotoWriter instance;
+
+    private final ContentResolver resolver;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile Listener listener;
+
+    private final AtomicInteger saved = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger rotated = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    public static synchronized PhotoWriter getInstance(Context context) {
+        if (instance == null) {
+            instance = new PhotoWriter(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private PhotoWriter(Context context) {
+        this.resolver = context.getContentResolver();
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    public boolean canAccept() {
+        return inFlight.get() < MAX_IN_FLIGHT;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Takes ownership of {@code image}. It is always closed, even if the shot
+     * is rejected because the writer is full.
+     */
+    public void submit(CaptureShot shot, ImageProxy image) {
+        CaptureMetrics.getInstance().begin(CaptureMetrics.Phase.CAPTURE_TO_SAVED, shot.cookie);
+        if (inFlight.incrementAndGet() > MAX_IN_FLIGHT) {
+            image.close();
+            finish(shot, null);
+            return;
+        }
+        maxInFlight.accumulateAndGet(inFlight.get(), Math::max);
+
+        boolean queued = IoScheduler.getInstance().execute(IoScheduler.Lane.CAPTURE, null, () -> {
+            Uri uri = null;
+            try {
+                byte[] jpeg;
+                int rotationDegrees = image.getImageInfo().getRotationDegrees();
+                Trace.beginSection("PhotoWriter.encode");
+                try {
+                    try {
+                        jpeg = copyJpeg(image);
+                    } finally {
+                        image.close();
+                    }
+                    jpeg = applyRotation(jpeg, rotationDegrees);
+                } finally {
+                    Trace.endSection();
+                }
+                Trace.beginSection("PhotoWriter.insert");
+                try {
+                    uri = insert(jpeg);
+                } finally {
+                    Trace.endSection();
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Could not save photo", e);
+            }
+            finish(shot, uri);
+        });
+        if (!queued) {
+            image.close();
+            finish(shot, null);
+        }
+    }
+
+    public String getStats() {
+        return "saved=" + saved.get() + ", failed=" + failed.get() + ", rotated=" + rotated.get() +
+               ", inFlight=" + inFlight.get() + ", maxInFlight=" + maxInFlight.get();
+    }
+
+    private void finish(CaptureShot shot, @Nullable Uri uri) {
+        boolean wasFull = inFlight.getAndDecrement() >= MAX_IN_FLIGHT;
+        if (uri != null) {
+            saved.incrementAndGet();
+            CaptureMetrics.getInstance().end(CaptureMetrics.Phase.CAPTURE_TO_SAVED, shot.cookie);
+        } else {
+            failed.incrementAndGet();
+            CaptureMetrics.getInstance().abandon(CaptureMetrics.Phase.CAPTURE_TO_SAVED, shot.cookie);
+        }
+        mainHandler.post(() -> {
+            Listener l = listener;
+            if (l == null) return;
+            if (uri != null) {
+                l.onPhotoSaved(shot, uri);
+            } else {
+                l.onPhotoFailed(shot);
+            }
+            if (wasFull) {
+                l.onCapacityChanged(canAccept());
+            }
+        });
+    }
+
+    private static byte[] copyJpeg(ImageProxy image) throws IOException {
+        if (image.getFormat() != ImageFormat.JPEG) {
+            throw new IOException("Unexpected image format " + image.getFormat());
+        }
+        ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+        buffer.rewind();
+        byte[] jpeg = new byte[buffer.remaining()];
+        buffer.get(jpeg);
+        return jpeg;
+    }
+
+    /**
+     * Most HALs tag the JPEG with the orientation CameraX asked for. When one
+     * does not, the pixels are rotated here so the photo is not saved sideways.
+     */
+    private byte[] applyRotation(byte[] jpeg, int rotationDegrees) throws IOException {
+        if (rotationDegrees == 0) return jpeg;
+
+        int orientation = new ExifInterface(new ByteArrayInputStream(jpeg))
+                .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_UNDEFINED);
+        if (orientation != ExifInterface.ORIENTATION_UNDEFINED
+                && orientation != ExifInterface.ORIENTATION_NORMAL) {
+            return jpeg;
+        }
+
+        Bitmap source = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length);
+        if (source == null) throw new IOException("Could not decode capture");
+        Matrix matrix = new Matrix();
+        matrix.postRotate(rotationDegrees);
+        Bitmap rotatedBitmap = Bitmap.createBitmap(source, 0, 0,
+                source.getWidth(), source.getHeight(), matrix, true);
+        source.recycle();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(jpeg.length);
+        rotatedBitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        rotatedBitmap.recycle();
+        rotated.incrementAndGet();
+        return out.toByteArray();
+    }
+
+    private Uri insert(byte[] jpeg) throws IOException {
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.getDefault())
+                .format(System.currentTimeMillis());
+
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.DISPLAY_NAME, "IMG_" + timestamp + ".jpg");
+        values.put(MediaStore.MediaColumns.MIME_TYPE, "image/jpeg");
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            values.put(MediaStore.MediaColumns.RELATIVE_PATH, "Pictures/CameraApp");
+            values.put(MediaStore.MediaColumns.IS_PENDING, 1);
+        }
+
+        Uri uri = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        if (uri == null) throw new IOException("MediaStore insert failed");
+
+        try (OutputStream out = resolver.openOutputStream(uri)) {
+            if (out == null) throw new IOException("No output stream for " + uri);
+            out.write(jpeg);
+        } catch (IOException | RuntimeException e) {
+            resolver.delete(uri, null, null);
+            throw e;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            ContentValues published = new ContentValues();
+            published.put(MediaStore.MediaColumns.IS_PENDING, 0);
+            resolver.update(uri, published, null, null);
+        }
+        return uri;
+    }
+}
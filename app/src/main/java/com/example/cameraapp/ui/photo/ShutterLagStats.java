@@ -0,0 +1,66 @@
+package com.example.cameraapp.ui.photo;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Per-profile shutter timings for the process lifetime: tap to the start of
+ * the still exposure, and exposure to the JPEG landing in MediaStore.
+ */
+public class ShutterLagStats {
+
+    private static ShutterLagStats instance;
+
+    private static final class Timings {
+        int shots = 0;
+        int exposuresSeen = 0;
+        long totalTapToExposureMs = 0;
+        long maxTapToExposureMs = 0;
+        long totalExposureToSavedMs = 0;
+        long maxExposureToSavedMs = 0;
+    }
+
+    private final Map<CaptureProfile, Timings> timings = new EnumMap<>(CaptureProfile.class);
+
+    public static synchronized ShutterLagStats getInstance() {
+        if (instance == null) {
+            instance = new ShutterLagStats();
+        }
+        return instance;
+    }
+
+    private ShutterLagStats() {
+    }
+
+    /** @param tapToExposureMs negative when the exposure start was not observed */
+    public synchronized void record(CaptureProfile profile, long tapToExposureMs, long exposureToSavedMs) {
+        Timings t = timings.get(profile);
+        if (t == null) {
+            t = new Timings();
+            timings.put(profile, t);
+        }
+        t.shots++;
+        if (tapToExposureMs >= 0) {
+            t.exposuresSeen++;
+            t.totalTapToExposureMs += tapToExposureMs;
+            t.maxTapToExposureMs = Math.max(t.maxTapToExposureMs, tapToExposureMs);
+        }
+        t.totalExposureToSavedMs += exposureToSavedMs;
+        t.maxExposureToSavedMs = Math.max(t.maxExposureToSavedMs, exposureToSavedMs);
+    }
+
+    public synchronized String getStats() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<CaptureProfile, Timings> entry : timings.entrySet()) {
+            Timings t = entry.getValue();
+            long avgTap = t.exposuresSeen == 0 ? -1 : t.totalTapToExposureMs / t.exposuresSeen;
+            if (sb.length() > 0) sb.append("; ");
+            sb.append(entry.getKey()).append(": shots=").append(t.shots)
+              .append(", avgTapToExposureMs=").append(avgTap)
+              .append(", maxTapToExposureMs=").append(t.maxTapToExposureMs)
+              .append(", avgExposureToSavedMs=").append(t.totalExposureToSavedMs / t.shots)
+              .append(", maxExposureToSavedMs=").append(t.maxExposureToSavedMs);
+        }
+        return sb.length() == 0 ? "no shots" : sb.toString();
+    }
+}
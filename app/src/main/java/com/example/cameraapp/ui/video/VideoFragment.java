@@ -43,6 +43,8 @@ import androidx.core.view.WindowInsetsCompat;
 import androidx.fragment.app.Fragment;
 import androidx.navigation.Navigation;
 
+import com.example.cameraapp.CameraSessionController;
+import com.example.cameraapp.CaptureMetrics;
 import com.example.cameraapp.R;
 import com.example.cameraapp.databinding.FragmentVideoBinding;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -64,10 +66,12 @@ public class VideoFragment extends Fragment {
     private Runnable recordingRunnable;
     private ObjectAnimator recordingDotAnimator;
 
-    private ProcessCameraProvider cameraProvider;
+    private CameraSessionController cameraSession;
     private Camera camera;
     private VideoCapture<Recorder> videoCapture;
     private Recording recording;
+    private int recordingCookie;
+    private final CaptureMetrics metrics = CaptureMetrics.getInstance();
     private Preview preview;
     
     private ScaleGestureDetector scaleGestureDetector;
@@ -88,6 +92,15 @@ public class VideoFragment extends Fragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         recordingHandler = new Handler(Looper.getMainLooper());
+        cameraSession = new CameraSessionController(getViewLifecycleOwner());
+        cameraSession.observePreview(binding.previewView);
+        preview = new Preview.Builder().build();
+        preview.setSurfaceProvider(binding.previewView.getSurfaceProvider());
+        Recorder recorder = new Recorder.Builder()
+                .setQualitySelector(QualitySelector.from(Quality.HD))
+                .build();
+        videoCapture = VideoCapture.withOutput(recorder);
+        cameraSession.setUseCases(preview, videoCapture);
         setupEdgeToEdge();
         setupControls();
         setupZoomGesture();
@@ -216,7 +229,7 @@ public class VideoFragment extends Fragment {
         
         cameraProviderFuture.addListener(() -> {
             try {
-                cameraProvider = cameraProviderFuture.get();
+                cameraSession.setCameraProvider(cameraProviderFuture.get());
                 bindCameraUseCases();
             } catch (ExecutionException | InterruptedException e) {
                 Toast.makeText(requireContext(), R.string.error_camera_init, Toast.LENGTH_SHORT).show();
@@ -225,35 +238,19 @@ public class VideoFragment extends Fragment {
     }
     
     private void bindCameraUseCases() {
-        if (cameraProvider == null || !isAdded()) return;
-        
-        cameraProvider.unbindAll();
-        
-        CameraSelector cameraSelector = new CameraSelector.Builder()
-                .requireLensFacing(isUsingFrontCamera ? 
-                        CameraSelector.LENS_FACING_FRONT : CameraSelector.LENS_FACING_BACK)
-                .build();
-        
-        preview = new Preview.Builder().build();
-        preview.setSurfaceProvider(binding.previewView.getSurfaceProvider());
-        
-        Recorder recorder = new Recorder.Builder()
-                .setQualitySelector(QualitySelector.from(Quality.HD))
-                .build();
-        videoCapture = VideoCapture.withOutput(recorder);
+        if (cameraSession.getCameraProvider() == null || !isAdded()) return;
+
+        int lensFacing = isUsingFrontCamera
+                ? CameraSelector.LENS_FACING_FRONT : CameraSelector.LENS_FACING_BACK;
         
         try {
-            camera = cameraProvider.bindToLifecycle(
-                    getViewLifecycleOwner(),
-                    cameraSelector,
-                    preview,
-                    videoCapture
-            );
-            
-            currentZoomRatio = 1f;
-            setupTapToFocus();
-            
+            if (cameraSession.bind(lensFacing)) {
+                camera = cameraSession.getCamera();
+                currentZoomRatio = 1f;
+                setupTapToFocus();
+            }
         } catch (Exception e) {
+            camera = null;
             Toast.makeText(requireContext(), R.string.error_camera_init, Toast.LENGTH_SHORT).show();
         }
     }
@@ -272,6 +269,10 @@ public class VideoFragment extends Fragment {
         
         isRecording = true;
         recordingStartTime = System.currentTimeMillis();
+        int cookie = metrics.newCookie();
+        recordingCookie = cookie;
+        metrics.begin(CaptureMetrics.Phase.RECORD_TO_START, cookie);
+        metrics.begin(CaptureMetrics.Phase.RECORD_TO_FIRST_STATUS, cookie);
         
         binding.btnRecord.setBackgroundResource(R.drawable.capture_button_recording);
         binding.btnRecord.setContentDescription(getString(R.string.stop_recording));
@@ -301,8 +302,16 @@ public class VideoFragment extends Fragment {
                 .prepareRecording(requireContext(), outputOptions)
                 .withAudioEnabled()
                 .start(ContextCompat.getMainExecutor(requireContext()), videoRecordEvent -> {
+                    if (videoRecordEvent instanceof VideoRecordEvent.Start) {
+                        metrics.end(CaptureMetrics.Phase.RECORD_TO_START, cookie);
+                    } else if (videoRecordEvent instanceof VideoRecordEvent.Status) {
+                        metrics.end(CaptureMetrics.Phase.RECORD_TO_FIRST_STATUS, cookie);
+                    }
                     if (videoRecordEvent instanceof VideoRecordEvent.Finalize) {
                         VideoRecordEvent.Finalize finalizeEvent = (VideoRecordEvent.Finalize) videoRecordEvent;
+                        metrics.end(CaptureMetrics.Phase.STOP_TO_FINALIZE, cookie);
+                        metrics.abandon(CaptureMetrics.Phase.RECORD_TO_START, cookie);
+                        metrics.abandon(CaptureMetrics.Phase.RECORD_TO_FIRST_STATUS, cookie);
                         if (!finalizeEvent.hasError()) {
                             if (isAdded()) {
                                 Toast.makeText(requireContext(), R.string.video_saved, Toast.LENGTH_SHORT).show();
@@ -326,6 +335,7 @@ public class VideoFragment extends Fragment {
         if (recording == null) return;
         
         isRecording = false;
+        metrics.begin(CaptureMetrics.Phase.STOP_TO_FINALIZE, recordingCookie);
         recording.stop();
         recording = null;
 
@@ -397,6 +407,7 @@ public class VideoFragment extends Fragment {
                 .setDuration(300)
                 .start();
 
+        cameraSession.markSwitch();
         bindCameraUseCases();
     }
 
@@ -408,7 +419,8 @@ public class VideoFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        if (hasRequiredPermissions() && cameraProvider != null && !isRecording) {
+        if (hasRequiredPermissions() && !isRecording) {
+            cameraSession.markResume();
             bindCameraUseCases();
         }
     }
@@ -419,22 +431,19 @@ public class VideoFragment extends Fragment {
         if (isRecording) {
             stopRecording();
         }
-        if (cameraProvider != null) {
-            cameraProvider.unbindAll();
-        }
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        cameraSession.logStats("video");
+        metrics.dumpAndReset("video");
         stopRecordingTimer();
         stopRecordingDotAnimation();
         if (recording != null) {
             recording.stop();
         }
-        if (cameraProvider != null) {
-            cameraProvider.unbindAll();
-        }
+        cameraSession.unbind();
         binding = null;
     }
 }
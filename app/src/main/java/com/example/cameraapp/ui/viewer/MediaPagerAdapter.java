@@ -1,68 +1,250 @@
 package com.example.cameraapp.ui.viewer;
 
+import android.graphics.Matrix;
+import android.graphics.SurfaceTexture;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.view.LayoutInflater;
+import android.view.Surface;
+import android.view.TextureView;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
-import android.widget.VideoView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.example.cameraapp.MediaMemoryCache;
 import com.example.cameraapp.R;
+import com.example.cameraapp.ui.gallery.GalleryAdapter;
 import com.example.cameraapp.ui.gallery.MediaItem;
+import com.example.cameraapp.ui.gallery.MediaTable;
+import com.example.cameraapp.ui.gallery.MediaThumbnail;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 public class MediaPagerAdapter extends RecyclerView.Adapter<MediaPagerAdapter.MediaViewHolder> {
 
-    private final List<MediaItem> items = new ArrayList<>();
+    private MediaTable items = new MediaTable();
+    private boolean itemsSet = false;
     private OnVideoClickListener videoClickListener;
-    private VideoView currentVideoView;
-    private int currentVideoPosition = -1;
+    private MediaMemoryCache metadataCache;
+    private ViewerPlayer player;
+    private final Set<MediaViewHolder> boundHolders = new HashSet<>();
+    private int selectedPosition = RecyclerView.NO_POSITION;
+    private int posterSize = MediaThumbnail.tierFor(Integer.MAX_VALUE);
+    private int placeholderSize = MediaThumbnail.tierFor(0);
+    private int preloadDistance = 1;
+
+    private int settledPosition = RecyclerView.NO_POSITION;
+    private long settledAt = 0;
+    private int settleCount = 0;
+    private int settleInstantCount = 0;
+    private long totalSettleMs = 0;
+    private long maxSettleMs = 0;
 
     public interface OnVideoClickListener {
-        void onVideoClick(VideoView videoView, MediaItem item, int position);
+        void onVideoClick(MediaItem item, int position);
     }
 
     public void setOnVideoClickListener(OnVideoClickListener listener) {
         this.videoClickListener = listener;
     }
 
-    public void setItems(List<MediaItem> newItems) {
-        items.clear();
-        items.addAll(newItems);
-        notifyDataSetChanged();
+    public MediaPagerAdapter() {
+        setHasStableIds(true);
+    }
+
+    /**
+     * Loads the snapshot the viewer opened on. Later changes are single-page
+     * deletes through {@link #removeItem(int)}.
+     *
+     * @throws IllegalStateException if the pages were already set
+     */
+    public void setItems(MediaTable newItems) {
+        if (itemsSet) {
+            throw new IllegalStateException("MediaPagerAdapter pages can only be set once");
+        }
+        itemsSet = true;
+        items = newItems;
+        notifyItemRangeInserted(0, newItems.size());
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return items.getId(position);
+    }
+
+    public int indexOf(long id) {
+        return items.indexOf(id);
     }
 
     public MediaItem getItem(int position) {
-        if (position >= 0 && position < items.size()) {
-            return items.get(position);
+        if (position < 0 || position >= items.size()) return null;
+        if (metadataCache == null) return items.getItem(position);
+
+        MediaItem item = metadataCache.getMetadata(items.getId(position));
+        if (item == null || item.getDateModified() != items.getDateModified(position)) {
+            item = items.getItem(position);
+            metadataCache.putMetadata(item);
+        }
+        return item;
+    }
+
+    public void setMemoryCache(MediaMemoryCache cache) {
+        this.metadataCache = cache;
+    }
+
+    public void setPlayer(ViewerPlayer player) {
+        this.player = player;
+    }
+
+    public void setPosterSize(int sizePx) {
+        this.posterSize = sizePx;
+    }
+
+    /**
+     * Size of the grid thumbnail shown while the screen-sized decode runs.
+     * Must equal the grid cell size, or the placeholder misses its cache entry.
+     */
+    public void setPlaceholderSize(int sizePx) {
+        this.placeholderSize = sizePx;
+    }
+
+    public void setPreloadDistance(int pages) {
+        this.preloadDistance = Math.max(1, pages);
+    }
+
+    public int getPreloadDistance() {
+        return preloadDistance;
+    }
+
+    /**
+     * Starts the settle-to-sharp clock for {@code position}. Stops right away
+     * if the page already shows its full decode.
+     */
+    public void onPageSettled(int position) {
+        if (position == settledPosition && settledAt == 0) return;
+        settledPosition = position;
+        settledAt = SystemClock.elapsedRealtime();
+        for (MediaViewHolder holder : boundHolders) {
+            if (holder.getBindingAdapterPosition() == position && holder.isSharp()) {
+                recordSharp(position);
+            }
+        }
+    }
+
+    private void recordSharp(int position) {
+        if (position != settledPosition || settledAt == 0) return;
+        long elapsed = SystemClock.elapsedRealtime() - settledAt;
+        settledAt = 0;
+        settleCount++;
+        if (elapsed == 0) {
+            settleInstantCount++;
+        }
+        totalSettleMs += elapsed;
+        maxSettleMs = Math.max(maxSettleMs, elapsed);
+    }
+
+    public String getStats() {
+        long avgSettleMs = settleCount == 0 ? 0 : totalSettleMs / settleCount;
+        return "preloadDistance=" + preloadDistance + ", settles=" + settleCount +
+               ", alreadySharp=" + settleInstantCount + ", avgSettleToSharpMs=" + avgSettleMs +
+               ", maxSettleToSharpMs=" + maxSettleMs;
+    }
+
+    /**
+     * Moves the shared player's output to the selected page and pre-buffers
+     * the clips either side of it. Other pages fall back to their poster, and
+     * players for clips further away are released.
+     */
+    public void onPageSelected(int position) {
+        selectedPosition = position;
+        if (player != null) {
+            player.releaseAllExcept(videoUri(position), videoUri(position - 1),
+                    videoUri(position + 1));
+        }
+        for (MediaViewHolder holder : boundHolders) {
+            int holderPosition = holder.getBindingAdapterPosition();
+            if (holderPosition == position) {
+                holder.attachPlayer();
+            } else {
+                holder.showPoster();
+                holder.photoView.resetZoom();
+                if (holderPosition == RecyclerView.NO_POSITION
+                        || Math.abs(holderPosition - position) > preloadDistance) {
+                    holder.photoView.recycle();
+                } else {
+                    holder.ensureImage(holderPosition);
+                }
+            }
+        }
+        preloadNeighbour(position + 1);
+        preloadNeighbour(position - 1);
+    }
+
+    @Nullable
+    private Uri videoUri(int position) {
+        if (position < 0 || position >= items.size() || !items.isVideo(position)) return null;
+        return items.getUri(position);
+    }
+
+    private void preloadNeighbour(int position) {
+        if (player != null && position >= 0 && position < items.size() && items.isVideo(position)) {
+            player.preload(items.getUri(position));
+        }
+    }
+
+    public void onPlayerStateChanged(Uri uri, ViewerPlayer.State state) {
+        MediaViewHolder holder = findHolder(uri);
+        if (holder != null) {
+            holder.showState(state);
+        }
+    }
+
+    public void onVideoSizeChanged(Uri uri, int width, int height) {
+        MediaViewHolder holder = findHolder(uri);
+        if (holder != null) {
+            holder.fitVideo(width, height);
+        }
+    }
+
+    public void onFirstFrame(Uri uri) {
+        MediaViewHolder holder = findHolder(uri);
+        if (holder != null) {
+            holder.hidePoster();
+        }
+    }
+
+    @Nullable
+    private MediaViewHolder findHolder(Uri uri) {
+        for (MediaViewHolder holder : boundHolders) {
+            if (uri.equals(holder.videoUri)) return holder;
         }
         return null;
     }
 
     public void removeItem(int position) {
         if (position >= 0 && position < items.size()) {
+            if (items.isFrozen()) {
+                items = items.copy();
+            }
             items.remove(position);
             notifyItemRemoved(position);
         }
     }
 
     public void pauseCurrentVideo() {
-        if (currentVideoView != null && currentVideoView.isPlaying()) {
-            currentVideoView.pause();
+        if (player != null) {
+            player.pause();
         }
     }
 
-    public VideoView getCurrentVideoView() {
-        return currentVideoView;
-    }
-
     @NonNull
     @Override
     public MediaViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -73,8 +255,16 @@ public class MediaPagerAdapter extends RecyclerView.Adapter<MediaPagerAdapter.Me
 
     @Override
     public void onBindViewHolder(@NonNull MediaViewHolder holder, int position) {
-        MediaItem item = items.get(position);
-        holder.bind(item, position);
+        boundHolders.add(holder);
+        holder.bind(position);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull MediaViewHolder holder) {
+        holder.boundId = -1;
+        holder.showPoster();
+        holder.photoView.recycle();
+        boundHolders.remove(holder);
     }
 
     @Override
@@ -82,86 +272,171 @@ public class MediaPagerAdapter extends RecyclerView.Adapter<MediaPagerAdapter.Me
         return items.size();
     }
 
-    class MediaViewHolder extends RecyclerView.ViewHolder {
+    class MediaViewHolder extends RecyclerView.ViewHolder implements TextureView.SurfaceTextureListener {
         private final ImageView imageView;
-        private final VideoView videoView;
+        private final ZoomablePhotoView photoView;
+        private final TextureView textureView;
         private final ProgressBar progressBar;
         private final ImageView playOverlay;
+        private final Matrix transform = new Matrix();
+
+        private Uri videoUri;
+        private long boundId = -1;
+        private long boundDateModified = -1;
+        private Surface surface;
+        private int videoWidth = 0;
+        private int videoHeight = 0;
 
         MediaViewHolder(@NonNull View itemView) {
             super(itemView);
             imageView = itemView.findViewById(R.id.image_view);
-            videoView = itemView.findViewById(R.id.video_view);
+            photoView = itemView.findViewById(R.id.photo_view);
+            textureView = itemView.findViewById(R.id.video_view);
             progressBar = itemView.findViewById(R.id.progress_bar);
+            photoView.setOnImageReadyListener(() -> {
+                progressBar.setVisibility(View.GONE);
+                imageView.setVisibility(View.GONE);
+                recordSharp(getBindingAdapterPosition());
+            });
             playOverlay = itemView.findViewById(R.id.play_overlay);
+            textureView.setSurfaceTextureListener(this);
+
+            View.OnClickListener clickListener = v -> {
+                int position = getBindingAdapterPosition();
+                if (videoClickListener == null || videoUri == null
+                        || position == RecyclerView.NO_POSITION) return;
+                videoClickListener.onVideoClick(getItem(position), position);
+            };
+
+            playOverlay.setOnClickListener(clickListener);
+            textureView.setOnClickListener(clickListener);
+            imageView.setOnClickListener(clickListener);
         }
 
-        void bind(MediaItem item, int position) {
-            progressBar.setVisibility(View.VISIBLE);
+        void bind(int position) {
+            if (items.getId(position) == boundId && items.getDateModified(position) == boundDateModified) {
+                return;
+            }
+            boundId = items.getId(position);
+            boundDateModified = items.getDateModified(position);
+
+            progressBar.setVisibility(View.GONE);
             imageView.setVisibility(View.GONE);
-            videoView.setVisibility(View.GONE);
+            photoView.setVisibility(View.GONE);
+            textureView.setVisibility(View.GONE);
             playOverlay.setVisibility(View.GONE);
+            videoWidth = 0;
+            videoHeight = 0;
 
-            if (item.isVideo()) {
-                bindVideo(item, position);
+            if (items.isVideo(position)) {
+                videoUri = items.getUri(position);
+                photoView.recycle();
+                textureView.setVisibility(View.VISIBLE);
+                bindPoster(position);
+                if (position == selectedPosition) {
+                    attachPlayer();
+                }
             } else {
-                bindImage(item);
+                videoUri = null;
+                bindImage(position);
             }
         }
 
-        private void bindImage(MediaItem item) {
+        private void bindImage(int position) {
+            photoView.setVisibility(View.VISIBLE);
             imageView.setVisibility(View.VISIBLE);
-            
-            Glide.with(itemView.getContext())
-                    .load(item.getUri())
+            MediaThumbnail placeholder = new MediaThumbnail(items.getId(position), false,
+                    items.getDateModified(position), placeholderSize);
+            GalleryAdapter.thumbnailRequest(Glide.with(itemView.getContext()),
+                            placeholder, placeholderSize)
                     .into(imageView);
-            
-            progressBar.setVisibility(View.GONE);
+            photoView.setImage(items.getUri(position), items.getId(position),
+                    items.getDateModified(position));
         }
 
-        private void bindVideo(MediaItem item, int position) {
-            videoView.setVisibility(View.VISIBLE);
-            playOverlay.setVisibility(View.VISIBLE);
-            
+        void ensureImage(int position) {
+            if (videoUri == null && !items.isVideo(position)) {
+                photoView.setImage(items.getUri(position), items.getId(position),
+                        items.getDateModified(position));
+            }
+        }
+
+        boolean isSharp() {
+            return videoUri == null ? photoView.hasImage() : true;
+        }
+
+        private void bindPoster(int position) {
             Glide.with(itemView.getContext())
-                    .load(item.getUri())
+                    .load(new MediaThumbnail(items.getId(position), true,
+                            items.getDateModified(position), posterSize))
+                    .diskCacheStrategy(DiskCacheStrategy.NONE)
+                    .fitCenter()
                     .into(imageView);
+            showPoster();
+        }
+
+        void attachPlayer() {
+            if (videoUri == null || player == null || surface == null) return;
+            player.attach(videoUri, surface);
+            showState(player.getState());
+        }
+
+        void showPoster() {
+            if (videoUri == null) return;
             imageView.setVisibility(View.VISIBLE);
+            playOverlay.setVisibility(View.VISIBLE);
+            progressBar.setVisibility(View.GONE);
+        }
 
-            videoView.setVideoURI(item.getUri());
-            
-            videoView.setOnPreparedListener(mp -> {
-                progressBar.setVisibility(View.GONE);
-                mp.setLooping(true);
-            });
+        void hidePoster() {
+            imageView.setVisibility(View.GONE);
+        }
 
-            videoView.setOnErrorListener((mp, what, extra) -> {
-                progressBar.setVisibility(View.GONE);
-                return true;
-            });
+        void showState(ViewerPlayer.State state) {
+            progressBar.setVisibility(state == ViewerPlayer.State.PREPARING ? View.VISIBLE : View.GONE);
+            playOverlay.setVisibility(state == ViewerPlayer.State.PLAYING ? View.GONE : View.VISIBLE);
+        }
 
-            View.OnClickListener clickListener = v -> {
-                if (videoClickListener != null) {
-                    currentVideoView = videoView;
-                    currentVideoPosition = position;
-                    
-                    if (videoView.isPlaying()) {
-                        videoView.pause();
-                        playOverlay.setVisibility(View.VISIBLE);
-                        imageView.setVisibility(View.GONE);
-                    } else {
-                        imageView.setVisibility(View.GONE);
-                        playOverlay.setVisibility(View.GONE);
-                        videoView.start();
-                    }
-                    videoClickListener.onVideoClick(videoView, item, position);
+        void fitVideo(int width, int height) {
+            videoWidth = width;
+            videoHeight = height;
+            int viewWidth = textureView.getWidth();
+            int viewHeight = textureView.getHeight();
+            if (width <= 0 || height <= 0 || viewWidth <= 0 || viewHeight <= 0) return;
+
+            float scale = Math.min((float) viewWidth / width, (float) viewHeight / height);
+            transform.setScale(width * scale / viewWidth, height * scale / viewHeight,
+                    viewWidth / 2f, viewHeight / 2f);
+            textureView.setTransform(transform);
+        }
+
+        @Override
+        public void onSurfaceTextureAvailable(@NonNull SurfaceTexture texture, int width, int height) {
+            surface = new Surface(texture);
+            if (getBindingAdapterPosition() == selectedPosition) {
+                attachPlayer();
+            }
+        }
+
+        @Override
+        public void onSurfaceTextureSizeChanged(@NonNull SurfaceTexture texture, int width, int height) {
+            fitVideo(videoWidth, videoHeight);
+        }
+
+        @Override
+        public boolean onSurfaceTextureDestroyed(@NonNull SurfaceTexture texture) {
+            if (surface != null) {
+                if (player != null) {
+                    player.detachSurface(surface);
                 }
-            };
+                surface.release();
+                surface = null;
+            }
+            return true;
+        }
 
-            playOverlay.setOnClickListener(clickListener);
-            videoView.setOnClickListener(clickListener);
-            imageView.setOnClickListener(clickListener);
+        @Override
+        public void onSurfaceTextureUpdated(@NonNull SurfaceTexture texture) {
         }
     }
 }
-
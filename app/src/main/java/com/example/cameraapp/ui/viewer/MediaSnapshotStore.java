@@ -0,0 +1,72 @@
+package com.example.cameraapp.ui.viewer;
+
+import com.example.cameraapp.ui.gallery.MediaTable;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Hands the gallery's rows to the viewer without copying them. The gallery
+ * publishes a frozen {@link MediaTable} as a numbered snapshot; the viewer
+ * reads it by reference and records what it deletes, so the gallery can
+ * drop those rows on return instead of querying MediaStore again.
+ */
+public class MediaSnapshotStore {
+
+    public static final class Snapshot {
+        public final long version;
+        public final MediaTable items;
+
+        Snapshot(long version, MediaTable items) {
+            this.version = version;
+            this.items = items;
+        }
+    }
+
+    private static MediaSnapshotStore instance;
+
+    private Snapshot current = new Snapshot(0, new MediaTable().freeze());
+    private final Set<Long> deletedIds = new HashSet<>();
+
+    private MediaSnapshotStore() {}
+
+    public static synchronized MediaSnapshotStore getInstance() {
+        if (instance == null) {
+            instance = new MediaSnapshotStore();
+        }
+        return instance;
+    }
+
+    public synchronized Snapshot publish(MediaTable items) {
+        current = new Snapshot(current.version + 1, items.freeze());
+        deletedIds.clear();
+        return current;
+    }
+
+    public synchronized Snapshot getSnapshot() {
+        return current;
+    }
+
+    public synchronized void recordDeletion(long id) {
+        deletedIds.add(id);
+    }
+
+    /**
+     * Returns the ids deleted since {@code version} was published and forgets
+     * them. Returns an empty set if a newer snapshot has replaced it.
+     */
+    public synchronized Set<Long> consumeDeletions(long version) {
+        if (version != current.version || deletedIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<Long> deleted = new HashSet<>(deletedIds);
+        deletedIds.clear();
+        return deleted;
+    }
+
+    public synchronized void clear() {
+        current = new Snapshot(current.version + 1, new MediaTable().freeze());
+        deletedIds.clear();
+    }
+}
@@ -1,11 +1,14 @@
 package com.example.cameraapp.ui.viewer;
 
+import android.content.ContentResolver;
+import android.net.Uri;
 import android.os.Bundle;
+import android.util.DisplayMetrics;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
-import android.widget.VideoView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -16,22 +19,24 @@ import androidx.fragment.app.Fragment;
 import androidx.navigation.Navigation;
 import androidx.viewpager2.widget.ViewPager2;
 
+import com.example.cameraapp.IoScheduler;
+import com.example.cameraapp.MediaMemoryCache;
 import com.example.cameraapp.R;
 import com.example.cameraapp.databinding.FragmentMediaViewerBinding;
+import com.example.cameraapp.ui.gallery.GalleryFragment;
 import com.example.cameraapp.ui.gallery.MediaItem;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 
-import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 public class MediaViewerFragment extends Fragment {
 
+    private static final String TAG = "MediaViewerFragment";
+    private static final int PRELOAD_PAGES = 2;
+
     private FragmentMediaViewerBinding binding;
     private MediaPagerAdapter adapter;
-    private List<MediaItem> mediaItems;
+    private ViewerPlayer player;
+    private MediaSnapshotStore.Snapshot snapshot;
     private int initialPosition = 0;
-    private ExecutorService executor;
     private boolean isPlaying = false;
 
     @Override
@@ -44,8 +49,6 @@ public class MediaViewerFragment extends Fragment {
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
-        executor = Executors.newSingleThreadExecutor();
-        
         parseArguments();
         setupEdgeToEdge();
         setupViewPager();
@@ -53,8 +56,8 @@ public class MediaViewerFragment extends Fragment {
     }
 
     private void parseArguments() {
-        mediaItems = MediaCache.getInstance().getMediaItems();
-        
+        snapshot = MediaSnapshotStore.getInstance().getSnapshot();
+
         if (getArguments() != null) {
             initialPosition = getArguments().getInt("position", 0);
         }
@@ -74,14 +77,40 @@ public class MediaViewerFragment extends Fragment {
     }
 
     private void setupViewPager() {
+        player = new ViewerPlayer(requireContext());
         adapter = new MediaPagerAdapter();
-        adapter.setItems(mediaItems);
+        adapter.setMemoryCache(MediaMemoryCache.getInstance(requireContext()));
+        adapter.setPlayer(player);
+        adapter.setItems(snapshot.items);
+        adapter.setPosterSize(getResources().getDisplayMetrics().widthPixels);
+        adapter.setPlaceholderSize(getResources().getDisplayMetrics().widthPixels
+                / GalleryFragment.GRID_SPAN_COUNT);
+        adapter.setPreloadDistance(computePreloadDistance());
+        adapter.onPageSelected(initialPosition);
         
-        adapter.setOnVideoClickListener((videoView, item, position) -> {
-            isPlaying = videoView.isPlaying();
-            updateVideoControls(item);
+        adapter.setOnVideoClickListener((item, position) -> toggleVideoPlayback());
+        player.setListener(new ViewerPlayer.Listener() {
+            @Override
+            public void onStateChanged(Uri uri, ViewerPlayer.State state) {
+                adapter.onPlayerStateChanged(uri, state);
+                isPlaying = state == ViewerPlayer.State.PLAYING;
+                if (binding != null) {
+                    binding.btnPlayPause.setImageResource(isPlaying ? R.drawable.ic_pause : R.drawable.ic_play);
+                }
+            }
+
+            @Override
+            public void onVideoSizeChanged(Uri uri, int width, int height) {
+                adapter.onVideoSizeChanged(uri, width, height);
+            }
+
+            @Override
+            public void onFirstFrame(Uri uri) {
+                adapter.onFirstFrame(uri);
+            }
         });
 
+        binding.viewPager.setOffscreenPageLimit(adapter.getPreloadDistance());
         binding.viewPager.setAdapter(adapter);
         binding.viewPager.setCurrentItem(initialPosition, false);
         
@@ -91,10 +120,31 @@ public class MediaViewerFragment extends Fragment {
             @Override
             public void onPageSelected(int position) {
                 adapter.pauseCurrentVideo();
+                adapter.onPageSelected(position);
                 isPlaying = false;
                 updateUI(position);
             }
+
+            @Override
+            public void onPageScrollStateChanged(int state) {
+                if (state == ViewPager2.SCROLL_STATE_IDLE && binding != null) {
+                    adapter.onPageSettled(binding.viewPager.getCurrentItem());
+                }
+            }
         });
+        adapter.onPageSettled(initialPosition);
+    }
+
+    /**
+     * Pages kept decoded on each side of the current one: PRELOAD_PAGES, cut
+     * down so their screen-sized layers fit in half the preview budget.
+     */
+    private int computePreloadDistance() {
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        long bytesPerPage = (long) metrics.widthPixels * metrics.heightPixels * 4;
+        long budget = MediaMemoryCache.getInstance(requireContext()).getPreviewBudgetBytes() / 2;
+        long affordable = budget / Math.max(1, bytesPerPage * 2);
+        return (int) Math.max(1, Math.min(PRELOAD_PAGES, affordable));
     }
 
     private void updateUI(int position) {
@@ -116,9 +166,9 @@ public class MediaViewerFragment extends Fragment {
     }
 
     private void updateCounter(int position) {
-        if (mediaItems.size() > 1) {
+        if (adapter.getItemCount() > 1) {
             binding.tvCounter.setVisibility(View.VISIBLE);
-            binding.tvCounter.setText((position + 1) + " / " + mediaItems.size());
+            binding.tvCounter.setText((position + 1) + " / " + adapter.getItemCount());
         } else {
             binding.tvCounter.setVisibility(View.GONE);
         }
@@ -134,17 +184,11 @@ public class MediaViewerFragment extends Fragment {
     }
 
     private void toggleVideoPlayback() {
-        VideoView videoView = adapter.getCurrentVideoView();
-        if (videoView != null) {
-            if (videoView.isPlaying()) {
-                videoView.pause();
-                isPlaying = false;
-                binding.btnPlayPause.setImageResource(R.drawable.ic_play);
-            } else {
-                videoView.start();
-                isPlaying = true;
-                binding.btnPlayPause.setImageResource(R.drawable.ic_pause);
-            }
+        if (player == null || player.getCurrentUri() == null) return;
+        if (player.isPlaying()) {
+            player.pause();
+        } else {
+            player.play();
         }
     }
 
@@ -168,7 +212,7 @@ public class MediaViewerFragment extends Fragment {
                 binding.videoControls.animate().alpha(1f).setDuration(200).start();
             }
             
-            if (mediaItems.size() > 1) {
+            if (adapter.getItemCount() > 1) {
                 binding.tvCounter.setAlpha(0f);
                 binding.tvCounter.setVisibility(View.VISIBLE);
                 binding.tvCounter.animate().alpha(1f).setDuration(200).start();
@@ -191,22 +235,24 @@ public class MediaViewerFragment extends Fragment {
         
         if (item == null) return;
 
-        executor.execute(() -> {
+        ContentResolver resolver = requireContext().getContentResolver();
+        IoScheduler.getInstance().execute(IoScheduler.Lane.DELETE, null, () -> {
             try {
-                int deleted = requireContext().getContentResolver().delete(item.getUri(), null, null);
+                int deleted = resolver.delete(item.getUri(), null, null);
                 if (isAdded()) {
                     requireActivity().runOnUiThread(() -> {
+                        if (binding == null) return;
                         if (deleted > 0) {
                             Toast.makeText(requireContext(), "Файл удалён", Toast.LENGTH_SHORT).show();
                             
-                            mediaItems.remove(position);
-                            MediaCache.getInstance().setMediaItems(mediaItems);
+                            MediaSnapshotStore.getInstance().recordDeletion(item.getId());
+                            MediaMemoryCache.getInstance(requireContext()).invalidate(item.getId());
+                            adapter.removeItem(adapter.indexOf(item.getId()));
                             
-                            if (mediaItems.isEmpty()) {
+                            if (adapter.getItemCount() == 0) {
                                 navigateBack();
                             } else {
-                                adapter.removeItem(position);
-                                int newPosition = Math.min(position, mediaItems.size() - 1);
+                                int newPosition = Math.min(position, adapter.getItemCount() - 1);
                                 updateUI(newPosition);
                             }
                         } else {
@@ -237,9 +283,14 @@ public class MediaViewerFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
+        if (player != null) {
+            player.setListener(null);
+            player.release();
+            Log.d(TAG, "Video player: " + player.getStats());
+            Log.d(TAG, "Pages: " + adapter.getStats());
+            player = null;
         }
+        Log.d(TAG, "Memory cache: " + MediaMemoryCache.getInstance(requireContext()).getStats());
         binding = null;
     }
 }
@@ -0,0 +1,299 @@
+package com.example.cameraapp.ui.viewer;
+
+import android.content.Context;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+
+/**
+ * The viewer's only video engine. It keeps a fixed pool of MediaPlayers that
+ * are reset and reused rather than rebuilt: one renders the current page,
+ * the others sit prepared at the start of the neighbouring clips, so a swipe
+ * only has to move the output surface and call start(). Players for clips
+ * that are neither current nor a direct neighbour are reset, which frees
+ * their decoder, through {@link #releaseAllExcept(Uri...)}.
+ */
+public class ViewerPlayer {
+
+    private static final String TAG = "ViewerPlayer";
+    private static final int POOL_SIZE = 3;
+
+    public enum State {
+        IDLE, PREPARING, PREPARED, PLAYING, PAUSED, ERROR
+    }
+
+    public interface Listener {
+        void onStateChanged(Uri uri, State state);
+        void onVideoSizeChanged(Uri uri, int width, int height);
+        void onFirstFrame(Uri uri);
+    }
+
+    private final class Slot {
+        final MediaPlayer player = new MediaPlayer();
+        Uri uri;
+        State state = State.IDLE;
+        boolean playWhenReady = false;
+        long lastUsed = 0;
+        long startRequestedAt = 0;
+
+        Slot() {
+            player.setLooping(true);
+            player.setOnPreparedListener(mp -> {
+                setState(this, State.PREPARED);
+                if (playWhenReady) {
+                    start(this);
+                }
+            });
+            player.setOnVideoSizeChangedListener((mp, width, height) -> {
+                if (listener != null && uri != null) {
+                    listener.onVideoSizeChanged(uri, width, height);
+                }
+            });
+            player.setOnInfoListener((mp, what, extra) -> {
+                if (what == MediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START && startRequestedAt > 0) {
+                    recordFirstFrame(SystemClock.elapsedRealtime() - startRequestedAt);
+                    startRequestedAt = 0;
+                    if (listener != null) {
+                        listener.onFirstFrame(uri);
+                    }
+                }
+                return false;
+            });
+            player.setOnErrorListener((mp, what, extra) -> {
+                Log.w(TAG, "Playback error " + what + "/" + extra + " for " + uri);
+                setState(this, State.ERROR);
+                return true;
+            });
+        }
+    }
+
+    private final Context context;
+    private final Slot[] slots = new Slot[POOL_SIZE];
+    private Slot current;
+    private Surface currentSurface;
+    private Listener listener;
+    private boolean released = false;
+
+    private int prepares = 0;
+    private int reuses = 0;
+    private int releases = 0;
+    private int activeDecoders = 0;
+    private int peakDecoders = 0;
+    private int firstFrameCount = 0;
+    private long totalFirstFrameMs = 0;
+    private long maxFirstFrameMs = 0;
+
+    public ViewerPlayer(Context context) {
+        this.context = context.getApplicationContext();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Makes {@code uri} the current clip and renders it into {@code surface}.
+     * Reuses a pre-buffered player if the clip was preloaded.
+     */
+    public void attach(Uri uri, @Nullable Surface surface) {
+        if (released) return;
+        Slot slot = acquire(uri);
+        if (current != null && current != slot) {
+            pause(current);
+            current.player.setSurface(null);
+        }
+        current = slot;
+        currentSurface = surface;
+        slot.player.setSurface(surface);
+    }
+
+    public void detachSurface(Surface surface) {
+        if (current != null && currentSurface == surface) {
+            pause(current);
+            current.player.setSurface(null);
+            currentSurface = null;
+        }
+    }
+
+    /** Prepares {@code uri} in a spare player so it is ready the moment it becomes current. */
+    public void preload(Uri uri) {
+        if (released) return;
+        acquire(uri);
+    }
+
+    public void play() {
+        if (current == null) return;
+        current.playWhenReady = true;
+        if (current.state == State.PREPARED || current.state == State.PAUSED) {
+            start(current);
+        }
+    }
+
+    public void pause() {
+        if (current != null) {
+            pause(current);
+        }
+    }
+
+    public boolean isPlaying() {
+        return current != null && current.state == State.PLAYING;
+    }
+
+    @Nullable
+    public Uri getCurrentUri() {
+        return current != null ? current.uri : null;
+    }
+
+    public State getState() {
+        return current != null ? current.state : State.IDLE;
+    }
+
+    /**
+     * Resets every player whose clip is not in {@code keep}, so clips that
+     * scrolled away do not hold a prepared decoder until the viewer closes.
+     * Null entries stand for pages without a video.
+     */
+    public void releaseAllExcept(Uri... keep) {
+        if (released) return;
+        for (Slot slot : slots) {
+            if (slot.uri == null || contains(keep, slot.uri)) continue;
+            if (slot == current) {
+                pause(slot);
+                slot.player.setSurface(null);
+                current = null;
+                currentSurface = null;
+            }
+            slot.player.reset();
+            slot.uri = null;
+            slot.playWhenReady = false;
+            slot.startRequestedAt = 0;
+            slot.lastUsed = 0;
+            releases++;
+            setState(slot, State.IDLE);
+        }
+    }
+
+    private static boolean contains(Uri[] uris, Uri uri) {
+        for (Uri candidate : uris) {
+            if (uri.equals(candidate)) return true;
+        }
+        return false;
+    }
+
+    public int getActiveDecoderCount() {
+        return activeDecoders;
+    }
+
+    public void release() {
+        if (released) return;
+        released = true;
+        for (Slot slot : slots) {
+            slot.player.release();
+        }
+        current = null;
+        currentSurface = null;
+    }
+
+    public String getStats() {
+        long avgFirstFrameMs = firstFrameCount == 0 ? 0 : totalFirstFrameMs / firstFrameCount;
+        return "pool=" + POOL_SIZE + ", activeDecoders=" + activeDecoders +
+               ", peakDecoders=" + peakDecoders + ", prepares=" + prepares + ", reuses=" + reuses +
+               ", releases=" + releases + ", firstFrames=" + firstFrameCount + ", avgFirstFrameMs=" + avgFirstFrameMs +
+               ", maxFirstFrameMs=" + maxFirstFrameMs;
+    }
+
+    private Slot acquire(Uri uri) {
+        long now = SystemClock.elapsedRealtime();
+        for (Slot slot : slots) {
+            if (uri.equals(slot.uri) && slot.state != State.ERROR) {
+                slot.lastUsed = now;
+                reuses++;
+                return slot;
+            }
+        }
+
+        Slot victim = null;
+        for (Slot slot : slots) {
+            if (slot == current) continue;
+            if (victim == null || slot.lastUsed < victim.lastUsed) {
+                victim = slot;
+            }
+        }
+        if (victim == null) {
+            victim = slots[0];
+        }
+        prepare(victim, uri);
+        victim.lastUsed = now;
+        return victim;
+    }
+
+    private void prepare(Slot slot, Uri uri) {
+        slot.player.reset();
+        slot.uri = uri;
+        slot.playWhenReady = false;
+        slot.startRequestedAt = 0;
+        setState(slot, State.IDLE);
+        try {
+            slot.player.setDataSource(context, uri);
+            slot.player.setLooping(true);
+            slot.player.prepareAsync();
+            prepares++;
+            setState(slot, State.PREPARING);
+        } catch (IOException | IllegalStateException e) {
+            Log.w(TAG, "Could not prepare " + uri, e);
+            setState(slot, State.ERROR);
+        }
+    }
+
+    private void start(Slot slot) {
+        if (slot != current) return;
+        if (slot.state == State.PREPARED) {
+            slot.startRequestedAt = SystemClock.elapsedRealtime();
+        }
+        slot.player.start();
+        setState(slot, State.PLAYING);
+    }
+
+    private void pause(Slot slot) {
+        slot.playWhenReady = false;
+        if (slot.state == State.PLAYING) {
+            slot.player.pause();
+            setState(slot, State.PAUSED);
+        }
+    }
+
+    private void setState(Slot slot, State state) {
+        slot.state = state;
+        countDecoders();
+        if (listener != null && slot == current && slot.uri != null) {
+            listener.onStateChanged(slot.uri, state);
+        }
+    }
+
+    /** A player holds a decoder from prepareAsync() until it is reset or fails. */
+    private void countDecoders() {
+        int active = 0;
+        for (Slot slot : slots) {
+            if (slot != null && slot.state != State.IDLE && slot.state != State.ERROR) {
+                active++;
+            }
+        }
+        activeDecoders = active;
+        peakDecoders = Math.max(peakDecoders, active);
+    }
+
+    private void recordFirstFrame(long elapsedMs) {
+        firstFrameCount++;
+        totalFirstFrameMs += elapsedMs;
+        maxFirstFrameMs = Math.max(maxFirstFrameMs, elapsedMs);
+    }
+}
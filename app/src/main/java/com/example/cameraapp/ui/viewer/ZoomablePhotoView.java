@@ -0,0 +1,484 @@
+package com.example.cameraapp.ui.viewer;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.LongSparseArray;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.cameraapp.IoScheduler;
+import com.example.cameraapp.MediaMemoryCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pinch-zoomable photo view for sources far larger than the screen. It shows
+ * one screen-sized base layer and, once zoomed in past it, decodes only the
+ * visible tiles at the matching sample size through
+ * {@link BitmapRegionDecoder}. Tiles are kept in {@link MediaMemoryCache}, so
+ * memory is bounded by that cache rather than by the photo's resolution.
+ * Formats the region decoder cannot open fall back to a plain sampled decode
+ * of the base layer, without tiles.
+ */
+public class ZoomablePhotoView extends View {
+
+    private static final String TAG = "ZoomablePhotoView";
+    private static final int TILE_SIZE_PX = 512;
+    private static final float MAX_SOURCE_ZOOM = 2f;
+    private static final float DOUBLE_TAP_SCALE = 3f;
+    private static final long PENDING_TILE_TIMEOUT_MS = 1000;
+    private static final long TILE_RETRY_DELAY_MS = 50;
+
+    private final Matrix baseMatrix = new Matrix();
+    private final Matrix userMatrix = new Matrix();
+    private final Matrix drawMatrix = new Matrix();
+    private final Matrix inverseMatrix = new Matrix();
+    private final float[] matrixValues = new float[9];
+    private final RectF viewRect = new RectF();
+    private final RectF sourceRect = new RectF();
+    private final RectF tileRect = new RectF();
+    private final Rect visibleSource = new Rect();
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Map<String, Long> pendingTiles = new HashMap<>();
+    private final LongSparseArray<String> tileKeys = new LongSparseArray<>();
+
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+
+    private Uri uri;
+    private String cacheKey;
+    private IoScheduler.Token token;
+    private BitmapRegionDecoder decoder;
+    private Bitmap baseLayer;
+    private boolean baseLoading = false;
+    private int sourceWidth;
+    private int sourceHeight;
+    private int orientation;
+    private int baseSample = 1;
+    private float fitScale = 1f;
+    private OnImageReadyListener readyListener;
+
+    public interface OnImageReadyListener {
+        void onImageReady();
+    }
+
+    public ZoomablePhotoView(Context context) {
+        this(context, null);
+    }
+
+    public ZoomablePhotoView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(@NonNull ScaleGestureDetector detector) {
+                zoomBy(detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+                return true;
+            }
+        });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onScroll(@Nullable MotionEvent e1, @NonNull MotionEvent e2,
+                                    float distanceX, float distanceY) {
+                if (getUserScale() <= 1f) return false;
+                userMatrix.postTranslate(-distanceX, -distanceY);
+                onMatrixChanged();
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(@NonNull MotionEvent e) {
+                float target = getUserScale() > 1f ? 1f / getUserScale() : DOUBLE_TAP_SCALE;
+                zoomBy(target, e.getX(), e.getY());
+                return true;
+            }
+
+            @Override
+            public boolean onSingleTapConfirmed(@NonNull MotionEvent e) {
+                return performClick();
+            }
+        });
+    }
+
+    public void setOnImageReadyListener(@Nullable OnImageReadyListener listener) {
+        this.readyListener = listener;
+    }
+
+    public void setImage(Uri uri, long id, long dateModified) {
+        if (uri.equals(this.uri) && (baseLayer != null || baseLoading)) {
+            if (baseLayer != null && readyListener != null) {
+                readyListener.onImageReady();
+            }
+            return;
+        }
+        recycle();
+        this.uri = uri;
+        this.cacheKey = "tile/" + id + "_" + dateModified;
+        IoScheduler.Token imageToken = new IoScheduler.Token();
+        token = imageToken;
+
+        ContentResolver resolver = getContext().getContentResolver();
+        int targetWidth = Math.max(1, getResources().getDisplayMetrics().widthPixels);
+        int targetHeight = Math.max(1, getResources().getDisplayMetrics().heightPixels);
+        baseLoading = IoScheduler.getInstance().execute(IoScheduler.Lane.DECODE, imageToken, () -> {
+            try {
+                int rotation = readOrientation(resolver, uri);
+                BitmapRegionDecoder regionDecoder = openDecoder(resolver, uri);
+
+                int width;
+                int height;
+                if (regionDecoder != null) {
+                    width = regionDecoder.getWidth();
+                    height = regionDecoder.getHeight();
+                } else {
+                    BitmapFactory.Options bounds = decodeBounds(resolver, uri);
+                    width = bounds.outWidth;
+                    height = bounds.outHeight;
+                    if (width <= 0 || height <= 0) throw new IOException("Unreadable image " + uri);
+                }
+                boolean swapped = rotation == 90 || rotation == 270;
+                float fit = Math.min((float) targetWidth / (swapped ? height : width),
+                        (float) targetHeight / (swapped ? width : height));
+                int sample = sampleFor(fit);
+
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = sample;
+                options.inPreferredConfig = Bitmap.Config.RGB_565;
+                Bitmap base = regionDecoder != null
+                        ? regionDecoder.decodeRegion(new Rect(0, 0, width, height), options)
+                        : decodeSampled(resolver, uri, options);
+                if (base == null) {
+                    if (regionDecoder != null) {
+                        regionDecoder.recycle();
+                    }
+                    throw new IOException("Could not decode " + uri);
+                }
+
+                post(() -> {
+                    if (imageToken.isCancelled()) {
+                        if (regionDecoder != null) {
+                            regionDecoder.recycle();
+                        }
+                        return;
+                    }
+                    baseLoading = false;
+                    decoder = regionDecoder;
+                    baseLayer = base;
+                    sourceWidth = width;
+                    sourceHeight = height;
+                    orientation = rotation;
+                    baseSample = sample;
+                    resetMatrix();
+                    if (readyListener != null) {
+                        readyListener.onImageReady();
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Could not open " + uri, e);
+                post(() -> {
+                    if (!imageToken.isCancelled()) {
+                        baseLoading = false;
+                    }
+                });
+            }
+        });
+    }
+
+    public boolean hasImage() {
+        return baseLayer != null;
+    }
+
+    public void recycle() {
+        if (token != null) {
+            token.cancel();
+            token = null;
+        }
+        // Released behind the tiles already queued on the same lane, which
+        // never drops tasks; if it is full, release here instead.
+        BitmapRegionDecoder old = decoder;
+        if (old != null && !IoScheduler.getInstance().execute(IoScheduler.Lane.TILE, null, old::recycle)) {
+            old.recycle();
+        }
+        decoder = null;
+        baseLayer = null;
+        baseLoading = false;
+        uri = null;
+        cacheKey = null;
+        pendingTiles.clear();
+        tileKeys.clear();
+        userMatrix.reset();
+        invalidate();
+    }
+
+    public void resetZoom() {
+        userMatrix.reset();
+        onMatrixChanged();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        resetMatrix();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (baseLayer == null) return super.onTouchEvent(event);
+        scaleDetector.onTouchEvent(event);
+        gestureDetector.onTouchEvent(event);
+        getParent().requestDisallowInterceptTouchEvent(
+                getUserScale() > 1f || scaleDetector.isInProgress());
+        return true;
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        if (baseLayer == null) return;
+
+        canvas.save();
+        canvas.concat(drawMatrix);
+        sourceRect.set(0, 0, sourceWidth, sourceHeight);
+        canvas.drawBitmap(baseLayer, null, sourceRect, paint);
+
+        int sample = sampleFor(getEffectiveScale());
+        if (sample < baseSample && decoder != null) {
+            drawTiles(canvas, sample);
+        }
+        canvas.restore();
+    }
+
+    private void drawTiles(Canvas canvas, int sample) {
+        if (!computeVisibleSource()) return;
+
+        MediaMemoryCache cache = MediaMemoryCache.getInstance(getContext());
+        int tileSource = TILE_SIZE_PX * sample;
+        int firstColumn = visibleSource.left / tileSource;
+        int lastColumn = (visibleSource.right - 1) / tileSource;
+        int firstRow = visibleSource.top / tileSource;
+        int lastRow = (visibleSource.bottom - 1) / tileSource;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                String key = tileKey(sample, column, row);
+                int left = column * tileSource;
+                int top = row * tileSource;
+                int right = Math.min(left + tileSource, sourceWidth);
+                int bottom = Math.min(top + tileSource, sourceHeight);
+
+                Bitmap tile = cache.getPreview(key);
+                if (tile != null) {
+                    tileRect.set(left, top, right, bottom);
+                    canvas.drawBitmap(tile, null, tileRect, paint);
+                } else {
+                    requestTile(key, left, top, right, bottom, sample);
+                }
+            }
+        }
+    }
+
+    /** Cache keys are built once per tile and reused, so drawing a warm frame allocates nothing. */
+    private String tileKey(int sample, int column, int row) {
+        long packed = ((long) sample << 48) | ((long) column << 24) | row;
+        String key = tileKeys.get(packed);
+        if (key == null) {
+            key = cacheKey + "/" + sample + "/" + column + "/" + row;
+            tileKeys.put(packed, key);
+        }
+        return key;
+    }
+
+    private void requestTile(String key, int left, int top, int right, int bottom, int sample) {
+        long now = SystemClock.uptimeMillis();
+        Long requestedAt = pendingTiles.get(key);
+        if (requestedAt != null && now - requestedAt < PENDING_TILE_TIMEOUT_MS) return;
+        pendingTiles.put(key, now);
+
+        Rect region = new Rect(left, top, right, bottom);
+
+        BitmapRegionDecoder regionDecoder = decoder;
+        IoScheduler.Token tileToken = token;
+        MediaMemoryCache cache = MediaMemoryCache.getInstance(getContext());
+        // TILE never drops tasks: a rejected tile is cleared from pendingTiles
+        // right away and requested again on a redraw shortly after.
+        boolean queued = IoScheduler.getInstance().execute(IoScheduler.Lane.TILE, tileToken, () -> {
+            Bitmap tile = null;
+            try {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = sample;
+                options.inPreferredConfig = Bitmap.Config.RGB_565;
+                tile = regionDecoder.decodeRegion(region, options);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Tile decode failed for " + key, e);
+            }
+            Bitmap decoded = tile;
+            post(() -> {
+                pendingTiles.remove(key);
+                if (decoded != null && !tileToken.isCancelled()) {
+                    cache.putPreview(key, decoded);
+                    invalidate();
+                }
+            });
+        });
+        if (!queued) {
+            pendingTiles.remove(key);
+            postInvalidateDelayed(TILE_RETRY_DELAY_MS);
+        }
+    }
+
+    private boolean computeVisibleSource() {
+        if (!drawMatrix.invert(inverseMatrix)) return false;
+        viewRect.set(0, 0, getWidth(), getHeight());
+        inverseMatrix.mapRect(viewRect);
+        visibleSource.set(
+                Math.max(0, (int) Math.floor(viewRect.left)),
+                Math.max(0, (int) Math.floor(viewRect.top)),
+                Math.min(sourceWidth, (int) Math.ceil(viewRect.right)),
+                Math.min(sourceHeight, (int) Math.ceil(viewRect.bottom)));
+        return !visibleSource.isEmpty();
+    }
+
+    private void resetMatrix() {
+        if (sourceWidth == 0 || getWidth() == 0 || getHeight() == 0) return;
+        boolean swapped = orientation == 90 || orientation == 270;
+        float rotatedWidth = swapped ? sourceHeight : sourceWidth;
+        float rotatedHeight = swapped ? sourceWidth : sourceHeight;
+        fitScale = Math.min(getWidth() / rotatedWidth, getHeight() / rotatedHeight);
+
+        baseMatrix.setRotate(orientation, sourceWidth / 2f, sourceHeight / 2f);
+        baseMatrix.postTranslate((rotatedWidth - sourceWidth) / 2f, (rotatedHeight - sourceHeight) / 2f);
+        baseMatrix.postScale(fitScale, fitScale);
+        baseMatrix.postTranslate((getWidth() - rotatedWidth * fitScale) / 2f,
+                (getHeight() - rotatedHeight * fitScale) / 2f);
+        userMatrix.reset();
+        onMatrixChanged();
+    }
+
+    private void zoomBy(float factor, float focusX, float focusY) {
+        float maxUserScale = Math.max(1f, MAX_SOURCE_ZOOM / fitScale);
+        float target = Math.max(1f, Math.min(getUserScale() * factor, maxUserScale));
+        float applied = target / getUserScale();
+        userMatrix.postScale(applied, applied, focusX, focusY);
+        onMatrixChanged();
+    }
+
+    private void onMatrixChanged() {
+        drawMatrix.set(baseMatrix);
+        drawMatrix.postConcat(userMatrix);
+
+        sourceRect.set(0, 0, sourceWidth, sourceHeight);
+        drawMatrix.mapRect(sourceRect);
+        float dx = clampOffset(sourceRect.left, sourceRect.right, getWidth());
+        float dy = clampOffset(sourceRect.top, sourceRect.bottom, getHeight());
+        if (dx != 0 || dy != 0) {
+            userMatrix.postTranslate(dx, dy);
+            drawMatrix.postTranslate(dx, dy);
+        }
+        invalidate();
+    }
+
+    private static float clampOffset(float start, float end, int viewSize) {
+        float size = end - start;
+        if (size <= viewSize) return (viewSize - size) / 2f - start;
+        if (start > 0) return -start;
+        if (end < viewSize) return viewSize - end;
+        return 0;
+    }
+
+    private float getUserScale() {
+        userMatrix.getValues(matrixValues);
+        return (float) Math.hypot(matrixValues[Matrix.MSCALE_X], matrixValues[Matrix.MSKEW_Y]);
+    }
+
+    private float getEffectiveScale() {
+        return fitScale * getUserScale();
+    }
+
+    /** Largest power-of-two sample that still gives at least one source pixel per screen pixel. */
+    private static int sampleFor(float scale) {
+        int sample = 1;
+        while (sample * 2 * scale <= 1f) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    /** Null when the source cannot be region-decoded (GIF, HEIF before API 28, ...). */
+    @Nullable
+    private static BitmapRegionDecoder openDecoder(ContentResolver resolver, Uri uri) {
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) return null;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+                return BitmapRegionDecoder.newInstance(in);
+            }
+            return BitmapRegionDecoder.newInstance(in, false);
+        } catch (IOException | RuntimeException e) {
+            Log.d(TAG, "No region decoder for " + uri + ", using a sampled decode");
+            return null;
+        }
+    }
+
+    private static BitmapFactory.Options decodeBounds(ContentResolver resolver, Uri uri) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) throw new IOException("Cannot open " + uri);
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        return bounds;
+    }
+
+    @Nullable
+    private static Bitmap decodeSampled(ContentResolver resolver, Uri uri,
+                                        BitmapFactory.Options options) throws IOException {
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) return null;
+            return BitmapFactory.decodeStream(in, null, options);
+        }
+    }
+
+    private static int readOrientation(ContentResolver resolver, Uri uri) {
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) return 0;
+            int exif = new ExifInterface(in).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            switch (exif) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
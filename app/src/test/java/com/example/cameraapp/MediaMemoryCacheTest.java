@@ -0,0 +1,76 @@
+package com.example.cameraapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentCallbacks2;
+
+import com.example.cameraapp.MediaMemoryCache.TrimStep;
+
+import org.junit.Test;
+
+@SuppressWarnings("deprecation")
+public class MediaMemoryCacheTest {
+
+    @Test
+    public void runningModerateKeepsThreeQuartersOfPreviews() {
+        assertStep(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE, TrimStep.LIGHT, 3, 4, false);
+    }
+
+    @Test
+    public void runningLowKeepsHalfOfPreviews() {
+        assertStep(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW, TrimStep.HIDDEN, 2, 4, false);
+    }
+
+    @Test
+    public void runningCriticalEmptiesBothCaches() {
+        assertStep(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL, TrimStep.CRITICAL, 1, 2, true);
+    }
+
+    @Test
+    public void uiHiddenKeepsHalfOfPreviews() {
+        assertStep(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, TrimStep.HIDDEN, 2, 4, false);
+    }
+
+    @Test
+    public void backgroundKeepsHalfOfPreviews() {
+        assertStep(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND, TrimStep.HIDDEN, 2, 4, false);
+    }
+
+    @Test
+    public void moderateAlsoHalvesMetadata() {
+        assertStep(ComponentCallbacks2.TRIM_MEMORY_MODERATE, TrimStep.MODERATE, 1, 2, false);
+    }
+
+    @Test
+    public void completeEmptiesBothCaches() {
+        assertStep(ComponentCallbacks2.TRIM_MEMORY_COMPLETE, TrimStep.CRITICAL, 1, 2, true);
+    }
+
+    @Test
+    public void heavierLevelsNeverKeepMore() {
+        int[] levels = {
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE,
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW,
+                ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN,
+                ComponentCallbacks2.TRIM_MEMORY_BACKGROUND,
+                ComponentCallbacks2.TRIM_MEMORY_MODERATE,
+                ComponentCallbacks2.TRIM_MEMORY_COMPLETE,
+        };
+        for (int i = 1; i < levels.length; i++) {
+            TrimStep lighter = TrimStep.forLevel(levels[i - 1]);
+            TrimStep heavier = TrimStep.forLevel(levels[i]);
+            assertTrue("level " + levels[i], heavier.previewQuarters <= lighter.previewQuarters);
+            assertTrue("level " + levels[i], heavier.metadataQuarters <= lighter.metadataQuarters);
+        }
+    }
+
+    private static void assertStep(int level, TrimStep expected, int previewQuarters,
+                                   int metadataQuarters, boolean evictAll) {
+        TrimStep step = TrimStep.forLevel(level);
+        assertEquals(expected, step);
+        assertEquals(previewQuarters, step.previewQuarters);
+        assertEquals(metadataQuarters, step.metadataQuarters);
+        assertEquals(evictAll, step.evictAll);
+    }
+}